@@ -44,21 +44,29 @@ import com.helion3.prism.api.parameters.ParameterHandler;
 import com.helion3.prism.api.parameters.ParameterPlayer;
 import com.helion3.prism.api.parameters.ParameterRadius;
 import com.helion3.prism.api.parameters.ParameterTime;
-import com.helion3.prism.api.records.ActionableResult;
+import com.helion3.prism.api.query.QuerySession;
 import com.helion3.prism.api.storage.StorageAdapter;
+import com.helion3.prism.commands.ApplierTask;
 import com.helion3.prism.commands.PrismCommands;
 import com.helion3.prism.configuration.Config;
 import com.helion3.prism.configuration.Configuration;
+import com.helion3.prism.configuration.category.ShardCategory;
+import com.helion3.prism.configuration.category.StorageCategory;
 import com.helion3.prism.listeners.ChangeBlockListener;
 import com.helion3.prism.listeners.EntityListener;
 import com.helion3.prism.listeners.InventoryListener;
 import com.helion3.prism.listeners.RequiredInteractListener;
+import com.helion3.prism.listeners.RequiredPlayerListener;
+import com.helion3.prism.queues.RecordingExecutor;
+import com.helion3.prism.queues.RecordingQueue;
 import com.helion3.prism.queues.RecordingQueueManager;
 import com.helion3.prism.storage.h2.H2StorageAdapter;
 import com.helion3.prism.storage.mongodb.MongoStorageAdapter;
 import com.helion3.prism.storage.mysql.MySQLStorageAdapter;
+import com.helion3.prism.storage.sharded.ShardedStorageAdapter;
 import com.helion3.prism.util.PrismEvents;
 import com.helion3.prism.util.Reference;
+import com.helion3.prism.util.UndoJournal;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.spongepowered.api.Sponge;
@@ -75,6 +83,7 @@ import org.spongepowered.api.plugin.PluginContainer;
 import org.spongepowered.api.scheduler.Task;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -112,18 +121,21 @@ public final class Prism {
     private Configuration configuration;
     private StorageAdapter storageAdapter;
 
+    private final Map<String, ApplierTask> activeAppliers = Maps.newConcurrentMap();
     private final Set<UUID> activeWands = Sets.newHashSet();
     private final FilterList filterList = new FilterList(FilterMode.BLACKLIST);
     private final Set<FlagHandler> flagHandlers = Sets.newHashSet();
-    private final Map<UUID, List<ActionableResult>> lastActionResults = Maps.newHashMap();
+    private final Map<String, QuerySession> lastLookups = Maps.newConcurrentMap();
     private final Set<ParameterHandler> parameterHandlers = Sets.newHashSet();
     private final Set<PrismEvent> prismEvents = Sets.newHashSet();
     private final RecordingQueueManager recordingQueueManager = new RecordingQueueManager();
+    private UndoJournal undoJournal;
 
     @Listener
     public void onConstruction(GameConstructionEvent event) {
         instance = this;
         configuration = new Configuration(getPath());
+        undoJournal = new UndoJournal(getPath().getParent().resolve("undo"));
         Sponge.getRegistry().registerModule(PrismEvent.class, PrismEvents.REGISTRY_MODULE);
     }
 
@@ -159,6 +171,7 @@ public final class Prism {
 
         // Events required for internal operation
         Sponge.getEventManager().registerListeners(getPluginContainer(), new RequiredInteractListener());
+        Sponge.getEventManager().registerListeners(getPluginContainer(), new RequiredPlayerListener());
     }
 
     @Listener
@@ -168,27 +181,14 @@ public final class Prism {
 
     @Listener
     public void onStartedServer(GameStartedServerEvent event) {
-        String engine = getConfig().getStorageCategory().getEngine();
         try {
-            if (StringUtils.equalsIgnoreCase(engine, "h2")) {
-                storageAdapter = new H2StorageAdapter();
-            } else if (StringUtils.equalsAnyIgnoreCase(engine, "mongo", "mongodb")) {
-                storageAdapter = new MongoStorageAdapter();
-            } else if (StringUtils.equalsIgnoreCase(engine, "mysql")) {
-                storageAdapter = new MySQLStorageAdapter();
-            } else {
-                throw new Exception("Invalid storage engine configured.");
-            }
+            storageAdapter = createStorageAdapter();
 
             Preconditions.checkState(getStorageAdapter().connect());
 
-            // Initialize the recording queue manager
-            Task.builder()
-                    .async()
-                    .name("PrismRecordingQueueManager")
-                    .interval(1, TimeUnit.SECONDS)
-                    .execute(recordingQueueManager)
-                    .submit(getPluginContainer());
+            // Initialize the record builders and the recording queue manager
+            RecordingExecutor.start();
+            recordingQueueManager.start();
             getLogger().info("Prism started successfully. Bad guys beware.");
         } catch (Exception ex) {
             Sponge.getEventManager().unregisterPluginListeners(getPluginContainer());
@@ -196,15 +196,76 @@ public final class Prism {
         }
     }
 
+    /**
+     * Creates the configured storage adapter, sharded if any shards are
+     * configured.
+     *
+     * @return StorageAdapter
+     * @throws Exception If an engine is invalid
+     */
+    private StorageAdapter createStorageAdapter() throws Exception {
+        StorageCategory storage = getConfig().getStorageCategory();
+        if (storage.getShards().isEmpty()) {
+            return createStorageAdapter(ShardCategory.of(storage));
+        }
+
+        List<ShardCategory> categories = new ArrayList<>();
+        categories.add(ShardCategory.of(storage));
+        categories.addAll(storage.getShards());
+
+        List<StorageAdapter> shards = new ArrayList<>();
+        for (ShardCategory category : categories) {
+            shards.add(createStorageAdapter(category));
+        }
+
+        long timeBucket = 0;
+        if (StringUtils.equalsIgnoreCase(storage.getShardBy(), "time")) {
+            timeBucket = TimeUnit.HOURS.toMillis(Math.max(storage.getShardTimeBucket(), 1));
+        } else if (!StringUtils.equalsIgnoreCase(storage.getShardBy(), "world")) {
+            throw new Exception("Invalid shard-by configured.");
+        }
+
+        return new ShardedStorageAdapter(shards, categories, timeBucket);
+    }
+
+    /**
+     * Creates a storage adapter for a single database.
+     *
+     * @param category ShardCategory describing the database
+     * @return StorageAdapter
+     * @throws Exception If the engine is invalid
+     */
+    private StorageAdapter createStorageAdapter(ShardCategory category) throws Exception {
+        String engine = category.getEngine();
+        if (StringUtils.equalsIgnoreCase(engine, "h2")) {
+            return new H2StorageAdapter(category);
+        } else if (StringUtils.equalsAnyIgnoreCase(engine, "mongo", "mongodb")) {
+            return new MongoStorageAdapter(category);
+        } else if (StringUtils.equalsIgnoreCase(engine, "mysql")) {
+            return new MySQLStorageAdapter(category);
+        }
+
+        throw new Exception("Invalid storage engine configured.");
+    }
+
     @Listener
     public void onStoppedServer(GameStoppedServerEvent event) {
+        // Release appliers waiting on their scheduled task
+        getActiveAppliers().values().forEach(ApplierTask::stop);
+
         // Cancel all scheduled tasks
         Sponge.getScheduler().getScheduledTasks(getInstance()).forEach(Task::cancel);
 
         if (getStorageAdapter() != null) {
+            // Finish records which are still being built
+            RecordingExecutor.stop();
+
             // Flush any pending records
-            // If the scheduled task is still running this will block until it completes
-            recordingQueueManager.run();
+            // This blocks until the writers have finished their current batches
+            recordingQueueManager.stop();
+
+            // Keep anything which didn't fit for the next start
+            RecordingQueue.getSpill().close();
 
             // Shutdown storage
             getStorageAdapter().close();
@@ -240,6 +301,10 @@ public final class Prism {
         return storageAdapter;
     }
 
+    public RecordingQueueManager getRecordingQueueManager() {
+        return recordingQueueManager;
+    }
+
     /**
      * Returns a list of players who have active inspection wands.
      *
@@ -295,12 +360,31 @@ public final class Prism {
     }
 
     /**
-     * Get a map of players and their last available actionable results.
+     * Get a map of command sources and their running rollback or restore.
+     *
+     * @return A map of command source identifiers to their {@link ApplierTask}
+     */
+    public Map<String, ApplierTask> getActiveAppliers() {
+        return activeAppliers;
+    }
+
+    /**
+     * Get the journal of players' last rollback or restore.
+     *
+     * @return The {@link UndoJournal}
+     */
+    public UndoJournal getUndoJournal() {
+        return undoJournal;
+    }
+
+    /**
+     * Get a map of command sources and their last lookup which has a
+     * following page.
      *
-     * @return A map of players' UUIDs to a list of their {@link ActionableResult}s
+     * @return A map of command source identifiers to their {@link QuerySession}
      */
-    public Map<UUID, List<ActionableResult>> getLastActionResults() {
-        return lastActionResults;
+    public Map<String, QuerySession> getLastLookups() {
+        return lastLookups;
     }
 
     /**
@@ -23,17 +23,33 @@
  */
 package com.helion3.prism.api.filters;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.spongepowered.api.block.BlockType;
 import org.spongepowered.api.entity.living.player.Player;
 
+/**
+ * Decides which records are saved.
+ *
+ * The entries are held in an immutable snapshot which is replaced as a
+ * whole whenever the list changes, so lookups on the recording threads
+ * never lock and never see a half-applied update. Decisions per BlockType
+ * and per source class are cached in the snapshot, making repeated
+ * lookups a single table read.
+ */
 public class FilterList {
-    private final List<String> blocks = new ArrayList<>();
-    private final List<String> players = new ArrayList<>();
-    private final List<Class<?>> sources = new ArrayList<>();
     private final FilterMode mode;
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
+    private final LongAdder rejectedSourceCount = new LongAdder();
+    private final LongAdder rejectedBlockCount = new LongAdder();
 
     public FilterList(FilterMode mode) {
         this.mode = mode;
@@ -44,8 +60,10 @@ public class FilterList {
      *
      * @param sourceType Class
      */
-    public void addSource(Class<?> sourceType) {
+    public synchronized void addSource(Class<?> sourceType) {
+        Set<Class<?>> sources = new HashSet<>(snapshot.sources);
         sources.add(sourceType);
+        snapshot = new Snapshot(snapshot.blocks, snapshot.players, sources);
     }
 
     /**
@@ -55,15 +73,7 @@ public class FilterList {
      * @return If list allows this source.
      */
     public boolean allowsSource(Object object) {
-        boolean contains = false;
-
-        for (Class<?> c : sources) {
-            if (c.isInstance(object)) {
-                contains = true;
-                break;
-            }
-        }
-
+        boolean contains = object != null && snapshot.containsSource(object.getClass());
         return mode.equals(FilterMode.BLACKLIST) ? !contains : contains;
     }
 
@@ -81,8 +91,10 @@ public class FilterList {
      *
      * @param blockType String Block type string.
      */
-    public void addBlock(String blockType) {
+    public synchronized void addBlock(String blockType) {
+        Set<String> blocks = new HashSet<>(snapshot.blocks);
         blocks.add(blockType);
+        snapshot = new Snapshot(blocks, snapshot.players, snapshot.sources);
     }
 
     /**
@@ -90,8 +102,26 @@ public class FilterList {
      *
      * @param uuid String Player uuid string.
      */
-    public void addPlayer(String uuid) {
-        players.add(uuid);
+    public synchronized void addPlayer(String uuid) {
+        Set<UUID> players = new HashSet<>(snapshot.players);
+        players.add(UUID.fromString(uuid));
+        snapshot = new Snapshot(snapshot.blocks, players, snapshot.sources);
+    }
+
+    /**
+     * Replace all entries at once.
+     *
+     * @param blockTypes Collection of block type strings.
+     * @param uuids Collection of player uuid strings.
+     * @param sourceTypes Collection of source classes.
+     */
+    public synchronized void replace(Collection<String> blockTypes, Collection<String> uuids, Collection<Class<?>> sourceTypes) {
+        Set<UUID> players = new HashSet<>();
+        for (String uuid : uuids) {
+            players.add(UUID.fromString(uuid));
+        }
+
+        snapshot = new Snapshot(new HashSet<>(blockTypes), players, new HashSet<>(sourceTypes));
     }
 
     /**
@@ -101,7 +131,8 @@ public class FilterList {
      * @return boolean If list contains block type.
      */
     public boolean allows(BlockType blockType) {
-        return allowsBlock(blockType.toString());
+        boolean contains = snapshot.containsBlock(blockType);
+        return mode.equals(FilterMode.BLACKLIST) ? !contains : contains;
     }
 
     /**
@@ -111,11 +142,8 @@ public class FilterList {
      * @return boolean If list contains player uuid.
      */
     public boolean allows(Player player) {
-        if (mode.equals(FilterMode.WHITELIST)) {
-            return players.contains(player.getUniqueId().toString());
-        } else {
-            return players.isEmpty() || !players.contains(player.getUniqueId().toString());
-        }
+        boolean contains = snapshot.players.contains(player.getUniqueId());
+        return mode.equals(FilterMode.BLACKLIST) ? !contains : contains;
     }
 
     /**
@@ -125,10 +153,96 @@ public class FilterList {
      * @return boolean If list contains block type.
      */
     public boolean allowsBlock(String blockType) {
-        if (mode.equals(FilterMode.WHITELIST)) {
-            return blocks.contains(blockType);
-        } else {
-            return blocks.isEmpty() || !blocks.contains(blockType);
+        boolean contains = snapshot.blocks.contains(blockType);
+        return mode.equals(FilterMode.BLACKLIST) ? !contains : contains;
+    }
+
+    /**
+     * Check if this list will allow a record, counting rejections.
+     *
+     * @param source Object source
+     * @param originalBlockType Original BlockType, may be null
+     * @param replacementBlockType Replacement BlockType, may be null
+     * @return If list allows this record.
+     */
+    public boolean allows(Object source, BlockType originalBlockType, BlockType replacementBlockType) {
+        if (!allowsSource(source) || (source instanceof Player && !allows((Player) source))) {
+            rejectedSourceCount.increment();
+            return false;
+        }
+
+        if ((originalBlockType != null && !allows(originalBlockType))
+                || (replacementBlockType != null && !allows(replacementBlockType))) {
+            rejectedBlockCount.increment();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the amount of records rejected because of their source.
+     *
+     * @return long Rejected record count.
+     */
+    public long getRejectedSourceCount() {
+        return rejectedSourceCount.sum();
+    }
+
+    /**
+     * Get the amount of records rejected because of their blocks.
+     *
+     * @return long Rejected record count.
+     */
+    public long getRejectedBlockCount() {
+        return rejectedBlockCount.sum();
+    }
+
+    /**
+     * Immutable entries plus the decisions derived from them.
+     */
+    private static final class Snapshot {
+        private final Set<String> blocks;
+        private final Set<UUID> players;
+        private final Set<Class<?>> sources;
+        private volatile Map<BlockType, Boolean> blockTable = new IdentityHashMap<>();
+        private final Map<Class<?>, Boolean> sourceTable = new ConcurrentHashMap<>();
+
+        private Snapshot(Set<String> blocks, Set<UUID> players, Set<Class<?>> sources) {
+            this.blocks = blocks;
+            this.players = players;
+            this.sources = sources;
+        }
+
+        private boolean containsBlock(BlockType blockType) {
+            Boolean contains = blockTable.get(blockType);
+            if (contains == null) {
+                contains = blocks.contains(blockType.getId());
+
+                // Copy on write, there's only a few hundred block types
+                Map<BlockType, Boolean> table = new IdentityHashMap<>(blockTable);
+                table.put(blockType, contains);
+                blockTable = table;
+            }
+
+            return contains;
+        }
+
+        private boolean containsSource(Class<?> sourceClass) {
+            Boolean contains = sourceTable.get(sourceClass);
+            if (contains == null) {
+                contains = false;
+                for (Class<?> c : sources) {
+                    if (c.isAssignableFrom(sourceClass)) {
+                        contains = true;
+                        break;
+                    }
+                }
+
+                sourceTable.put(sourceClass, contains);
+            }
+
+            return contains;
         }
     }
 }
@@ -23,6 +23,8 @@
  */
 package com.helion3.prism.api.parameters;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.regex.Pattern;
@@ -31,6 +33,7 @@ import javax.annotation.Nullable;
 
 import org.spongepowered.api.command.CommandSource;
 
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import com.helion3.prism.api.query.FieldCondition;
 import com.helion3.prism.api.query.MatchRule;
@@ -60,7 +63,16 @@ public class ParameterBlock extends SimpleParameterHandler {
 
     @Override
     public Optional<CompletableFuture<?>> process(QuerySession session, String parameter, String value, Query query) {
-        query.addCondition(FieldCondition.of(DataQueries.Target, MatchRule.EQUALS, Pattern.compile(value.replace('_', ' '))));
+        List<Pattern> targets = new ArrayList<>();
+        for (String target : Splitter.on(',').omitEmptyStrings().trimResults().split(value)) {
+            targets.add(Pattern.compile(target.replace('_', ' ')));
+        }
+
+        if (targets.size() == 1) {
+            query.addCondition(FieldCondition.of(DataQueries.Target, MatchRule.EQUALS, targets.get(0)));
+        } else {
+            query.addCondition(FieldCondition.of(DataQueries.Target, MatchRule.INCLUDES, targets));
+        }
 
         return Optional.empty();
     }
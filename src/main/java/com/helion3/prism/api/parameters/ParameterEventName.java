@@ -23,6 +23,7 @@
  */
 package com.helion3.prism.api.parameters;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.regex.Pattern;
@@ -31,7 +32,9 @@ import javax.annotation.Nullable;
 
 import org.spongepowered.api.command.CommandSource;
 
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.helion3.prism.api.query.FieldCondition;
 import com.helion3.prism.api.query.MatchRule;
 import com.helion3.prism.api.query.Query;
@@ -62,7 +65,18 @@ public class ParameterEventName extends SimpleParameterHandler {
 
     @Override
     public Optional<CompletableFuture<?>> process(QuerySession session, String parameter, String value, Query query) {
-        query.addCondition(new FieldCondition(DataQueries.EventName, MatchRule.EQUALS, value));
+        // A leading ! excludes the listed events
+        boolean exclude = value.startsWith("!");
+        if (exclude || value.startsWith("~")) {
+            value = value.substring(1);
+        }
+
+        List<String> eventNames = Lists.newArrayList(Splitter.on(',').omitEmptyStrings().trimResults().split(value));
+        if (!exclude && eventNames.size() == 1) {
+            query.addCondition(new FieldCondition(DataQueries.EventName, MatchRule.EQUALS, eventNames.get(0)));
+        } else {
+            query.addCondition(new FieldCondition(DataQueries.EventName, exclude ? MatchRule.EXCLUDES : MatchRule.INCLUDES, eventNames));
+        }
 
         return Optional.empty();
     }
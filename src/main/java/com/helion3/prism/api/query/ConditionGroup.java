@@ -31,6 +31,7 @@ import org.spongepowered.api.world.Location;
 
 import com.google.common.collect.Range;
 import com.helion3.prism.util.DataQueries;
+import com.helion3.prism.util.SpatialKey;
 import org.spongepowered.api.world.extent.Extent;
 
 /**
@@ -132,6 +133,9 @@ public final class ConditionGroup implements Condition {
         Range<Integer> zRange = Range.open(location.getBlockZ() - radius, location.getBlockZ() + radius);
         conditions.add(FieldCondition.of(DataQueries.Location.then(DataQueries.Z), zRange));
 
+        // Chunk
+        conditions.add(chunks(location.getBlockX() - radius, location.getBlockZ() - radius, location.getBlockX() + radius, location.getBlockZ() + radius));
+
         return conditions;
     }
 
@@ -179,6 +183,32 @@ public final class ConditionGroup implements Condition {
             MatchRule.LESS_THAN_EQUAL,
             Math.max(blockLocation1.getZ(), blockLocation2.getZ())));
 
+        // Chunk
+        conditions.add(chunks(
+            Math.min(blockLocation1.getX(), blockLocation2.getX()),
+            Math.min(blockLocation1.getZ(), blockLocation2.getZ()),
+            Math.max(blockLocation1.getX(), blockLocation2.getX()),
+            Math.max(blockLocation1.getZ(), blockLocation2.getZ())));
+
+        return conditions;
+    }
+
+    /**
+     * Builds conditions matching the spatial keys of an area, letting
+     * storage use its spatial index rather than scanning along x.
+     *
+     * @param minX Lowest block x coordinate
+     * @param minZ Lowest block z coordinate
+     * @param maxX Highest block x coordinate
+     * @param maxZ Highest block z coordinate
+     * @return ConditionGroup
+     */
+    private static ConditionGroup chunks(int minX, int minZ, int maxX, int maxZ) {
+        ConditionGroup conditions = new ConditionGroup(Operator.OR);
+        for (Range<Long> range : SpatialKey.ranges(minX, minZ, maxX, maxZ)) {
+            conditions.add(FieldCondition.of(DataQueries.Location.then(DataQueries.Chunk), range));
+        }
+
         return conditions;
     }
 }
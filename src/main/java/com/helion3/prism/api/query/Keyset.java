@@ -0,0 +1,91 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.api.query;
+
+import java.util.Date;
+import java.util.Optional;
+
+import com.helion3.prism.api.records.Result;
+import com.helion3.prism.util.DataQueries;
+
+/**
+ * Position of the last record of a page. The next page continues after it
+ * using the created/id index instead of skipping over earlier rows.
+ */
+public final class Keyset {
+    private final Date created;
+    private final Object id;
+
+    /**
+     * Create a new keyset.
+     *
+     * @param created Date the last record was created
+     * @param id Storage id of the last record
+     */
+    public Keyset(Date created, Object id) {
+        this.created = created;
+        this.id = id;
+    }
+
+    /**
+     * Get the keyset of a result, if its storage id is known.
+     *
+     * @param result Result
+     * @return Optional keyset
+     */
+    public static Optional<Keyset> from(Result result) {
+        Optional<Object> id = result.data.get(DataQueries.RecordId);
+        Optional<Object> created = result.data.get(DataQueries.Created);
+        if (!id.isPresent() || !created.isPresent()) {
+            return Optional.empty();
+        }
+
+        // SQL storage returns epoch seconds
+        if (created.get() instanceof Date) {
+            return Optional.of(new Keyset((Date) created.get(), id.get()));
+        } else if (created.get() instanceof Number) {
+            return Optional.of(new Keyset(new Date(((Number) created.get()).longValue() * 1000L), id.get()));
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Get the date the last record was created.
+     *
+     * @return Date
+     */
+    public Date getCreated() {
+        return created;
+    }
+
+    /**
+     * Get the storage id of the last record.
+     *
+     * @return Object id, its type depends on the storage adapter
+     */
+    public Object getId() {
+        return id;
+    }
+}
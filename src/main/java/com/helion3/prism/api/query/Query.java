@@ -25,10 +25,12 @@ package com.helion3.prism.api.query;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 public final class Query {
     private final List<Condition> conditions = new ArrayList<>();
     private int limit = 1000;
+    private Keyset keyset;
 
     public void addConditions(List<Condition> conditions) {
         this.conditions.addAll(conditions);
@@ -68,4 +70,36 @@ public final class Query {
     public void setLimit(int limit) {
         this.limit = limit;
     }
-}
\ No newline at end of file
+
+    /**
+     * Get the position to continue after, if this query fetches a
+     * following page.
+     *
+     * @return Optional keyset
+     */
+    public Optional<Keyset> getKeyset() {
+        return Optional.ofNullable(keyset);
+    }
+
+    /**
+     * Set the position to continue after.
+     *
+     * @param keyset Keyset of the last record, or null to start at the beginning
+     */
+    public void setKeyset(Keyset keyset) {
+        this.keyset = keyset;
+    }
+
+    /**
+     * Creates a copy of this query sharing its conditions.
+     *
+     * @return Query
+     */
+    public Query copy() {
+        Query copy = new Query();
+        copy.addConditions(conditions);
+        copy.setLimit(limit);
+        copy.setKeyset(keyset);
+        return copy;
+    }
+}
@@ -156,4 +156,20 @@ public class QuerySession {
     public Sort getSortBy() {
         return sort;
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates a copy of this session running a different query, so
+     * variations of a query can run side by side.
+     *
+     * @param query Query
+     * @return QuerySession
+     */
+    public QuerySession withQuery(Query query) {
+        QuerySession copy = new QuerySession(commandSource);
+        copy.flags = new ArrayList<>(flags);
+        copy.query = query;
+        copy.radius = radius;
+        copy.sort = sort;
+        return copy;
+    }
+}
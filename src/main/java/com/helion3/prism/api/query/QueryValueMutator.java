@@ -24,5 +24,5 @@
 package com.helion3.prism.api.query;
 
 public interface QueryValueMutator {
-    String mutate(String value);
+    Object mutate(String value);
 }
@@ -24,6 +24,7 @@
 package com.helion3.prism.api.query;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -31,8 +32,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
 import org.spongepowered.api.data.DataQuery;
 
+import com.google.common.collect.BoundType;
 import com.google.common.collect.Range;
 import com.helion3.prism.Prism;
 
@@ -43,6 +49,7 @@ public class SQLQuery {
 
     protected final static String tablePrefix = Prism.getInstance().getConfig().getStorageCategory().getTablePrefix();
     protected final String query;
+    protected final List<Object> parameters;
 
     /**
      * Supported SQL query modes.
@@ -56,7 +63,47 @@ public class SQLQuery {
      * @param query String query
      */
     public SQLQuery(String query) {
+        this(query, Collections.emptyList());
+    }
+
+    /**
+     * Create a new SQLQuery with a query string and the values bound to its placeholders.
+     * @param query String query
+     * @param parameters List of values, in placeholder order
+     */
+    public SQLQuery(String query, List<Object> parameters) {
         this.query = query;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Get the values bound to the placeholders of this query.
+     *
+     * @return List of values, in placeholder order
+     */
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Prepare this query and bind its values.
+     *
+     * @param conn Connection
+     * @return PreparedStatement ready to execute
+     * @throws SQLException
+     */
+    public PreparedStatement prepare(Connection conn) throws SQLException {
+        PreparedStatement statement = conn.prepareStatement(query);
+        try {
+            for (int index = 0; index < parameters.size(); index++) {
+                statement.setObject(index + 1, parameters.get(index));
+            }
+        } catch (SQLException ex) {
+            statement.close();
+            throw ex;
+        }
+
+        return statement;
     }
 
     /**
@@ -72,6 +119,11 @@ public class SQLQuery {
         private Map<String, String> joins = new HashMap<>();
         private List<Condition> conditions = new ArrayList<>();
         private Map<DataQuery, QueryValueMutator> valueMutators = new HashMap<>();
+        private Map<DataQuery, String> placeholders = new HashMap<>();
+        private List<String> clauses = new ArrayList<>();
+        private List<Object> clauseParameters = new ArrayList<>();
+        private List<Object> parameters = new ArrayList<>();
+        private int limit;
 
         public Builder select() {
             mode = Mode.SELECT;
@@ -154,6 +206,44 @@ public class SQLQuery {
             return this;
         }
 
+        /**
+         * Add a condition written in SQL, combined with the field conditions using AND.
+         *
+         * @param clause String condition with ? placeholders
+         * @param values Object... values bound to the placeholders
+         * @return Builder
+         */
+        public Builder where(String clause, Object... values) {
+            clauses.add(clause);
+            Collections.addAll(clauseParameters, values);
+            return this;
+        }
+
+        /**
+         * Continue after the last record of a previous page, using the
+         * created/id order of the records table aliased as r.
+         *
+         * @param keyset Keyset of the last record
+         * @param sort Sort order of the query
+         * @return Builder
+         */
+        public Builder after(Keyset keyset, Sort sort) {
+            String comparator = sort == Sort.NEWEST_FIRST ? "<" : ">";
+            long created = keyset.getCreated().getTime() / 1000L;
+            return where(String.format("r.created %1$s ? OR (r.created = ? AND r.id %1$s ?)", comparator), created, created, keyset.getId());
+        }
+
+        /**
+         * Limit the amount of rows returned.
+         *
+         * @param limit int Maximum rows, 0 for no limit
+         * @return Builder
+         */
+        public Builder limit(int limit) {
+            this.limit = limit;
+            return this;
+        }
+
         /**
          * Add a value mutator.
          *
@@ -162,7 +252,20 @@ public class SQLQuery {
          * @return Builder
          */
         public Builder valueMutator(DataQuery path, QueryValueMutator mutator) {
+            return valueMutator(path, "?", mutator);
+        }
+
+        /**
+         * Add a value mutator whose value is bound inside an SQL expression.
+         *
+         * @param path DataQuery
+         * @param placeholder String SQL expression containing a single ? placeholder
+         * @param mutator QueryValueMutator mutator
+         * @return Builder
+         */
+        public Builder valueMutator(DataQuery path, String placeholder, QueryValueMutator mutator) {
             valueMutators.put(path, mutator);
+            placeholders.put(path, placeholder);
             return this;
         }
 
@@ -184,6 +287,7 @@ public class SQLQuery {
          */
         public SQLQuery build() {
             StringBuilder sql = new StringBuilder(mode.name() + " ");
+            parameters = new ArrayList<>();
 
             // Columns
             sql.append(String.join(", ", columns)).append(" ");
@@ -198,6 +302,11 @@ public class SQLQuery {
 
             // Where
             List<String> queryConditions = buildConditions(conditions);
+            for (String clause : clauses) {
+                queryConditions.add("AND (" + clause + ")");
+            }
+
+            parameters.addAll(clauseParameters);
             if (!queryConditions.isEmpty()) {
                 sql.append("WHERE ").append(String.join(" ", queryConditions).replaceFirst("AND|OR ", "")).append(" ");
             }
@@ -212,12 +321,16 @@ public class SQLQuery {
                 sql.append("ORDER BY ").append(String.join(", ", orderBy)).append(" ");
             }
 
-            return new SQLQuery(sql.toString().trim());
+            // Limit
+            if (limit > 0) {
+                sql.append("LIMIT ").append(limit).append(" ");
+            }
+
+            return new SQLQuery(sql.toString().trim(), parameters);
         }
 
         /**
          * Recursive method to build AND/OR condition groups.
-         * @todo Needs some more work, tests
          *
          * @param conditions List<Condition>
          * @return List of String conditions to append to a query.
@@ -225,84 +338,135 @@ public class SQLQuery {
         protected List<String> buildConditions(List<Condition> conditions) {
             List<String> queryConditions = new ArrayList<>();
             for (Condition fieldOrGroup : conditions) {
-                if (fieldOrGroup instanceof ConditionGroup) {
-                    ConditionGroup group = (ConditionGroup) fieldOrGroup;
-
-                    StringBuilder query = new StringBuilder("AND (");
-
-                    List<String> inner = new ArrayList<>();
-                    for (Object obj : group.getConditions()) {
-                        if (obj instanceof ConditionGroup) {
-                            query.append(buildConditions(((ConditionGroup) obj).getConditions()));
-                        }
-                        else if (obj instanceof FieldCondition) {
-                            FieldCondition condition = (FieldCondition) obj;
-                            String fieldComparator = getFieldComparator(condition);
-
-                            if (!fieldComparator.isEmpty()) {
-                                inner.add(popDataQuery(condition.getFieldName().toString()) + " " + fieldComparator);
-                            }
-                        }
-                        // @todo need and/or here
-                    }
-
-                    if (!inner.isEmpty()) {
-                        query.append(String.join(group.getOperator().name() + " ", inner));
-                    }
+                String condition = buildCondition(fieldOrGroup);
+                if (!condition.isEmpty()) {
+                    queryConditions.add("AND " + condition);
+                }
+            }
 
-                    queryConditions.add(query + ")");
-                } else {
-                    FieldCondition condition = (FieldCondition) fieldOrGroup;
-                    String fieldComparator = getFieldComparator(condition);
+            return queryConditions;
+        }
 
-                    if (!fieldComparator.isEmpty()) {
-                        queryConditions.add("AND (" + popDataQuery(condition.getFieldName().toString()) + " " + fieldComparator + ")");
+        /**
+         * Builds a single field condition or a parenthesized condition group,
+         * including any nested groups.
+         *
+         * @param fieldOrGroup Condition
+         * @return String condition, or an empty string if there's nothing to compare
+         */
+        protected String buildCondition(Condition fieldOrGroup) {
+            if (fieldOrGroup instanceof ConditionGroup) {
+                ConditionGroup group = (ConditionGroup) fieldOrGroup;
+
+                List<String> inner = new ArrayList<>();
+                for (Condition condition : group.getConditions()) {
+                    String innerCondition = buildCondition(condition);
+                    if (!innerCondition.isEmpty()) {
+                        inner.add(innerCondition);
                     }
                 }
+
+                if (inner.isEmpty()) {
+                    return "";
+                }
+
+                return "(" + String.join(" " + group.getOperator().name() + " ", inner) + ")";
             }
 
-            return queryConditions;
+            FieldCondition condition = (FieldCondition) fieldOrGroup;
+            String fieldComparator = getFieldComparator(condition);
+            if (fieldComparator.isEmpty()) {
+                return "";
+            }
+
+            return "(" + popDataQuery(condition.getFieldName().toString()) + " " + fieldComparator.trim() + ")";
         }
 
         /**
-         * Builder a specific field comparator query fragment.
+         * Builder a specific field comparator query fragment. Values are
+         * bound through placeholders, in the order they appear in the query.
          *
          * @param condition FieldCondition
          * @return String
          */
         protected String getFieldComparator(FieldCondition condition) {
-            String fieldComparator = "";
             String field = popDataQuery(condition.getFieldName().toString());
 
-            String value = "'" + condition.getValue().toString() + "'";
+            if (condition.getMatchRule().equals(MatchRule.BETWEEN)) {
+                Range<?> range = (Range<?>) condition.getValue();
+                List<String> bounds = new ArrayList<>(2);
+                if (range.hasLowerBound()) {
+                    bounds.add((range.lowerBoundType() == BoundType.CLOSED ? ">= " : "> ") + bind(condition.getFieldName(), range.lowerEndpoint()));
+                }
+
+                if (range.hasUpperBound()) {
+                    bounds.add((range.upperBoundType() == BoundType.CLOSED ? "<= " : "< ") + bind(condition.getFieldName(), range.upperEndpoint()));
+                }
 
-            // Dates are stored as epochs in sql schemas
-            if (condition.getValue() instanceof Date) {
-                value = "" + (((Date) condition.getValue()).getTime() / 1000L);
+                // Unbounded on both ends doesn't restrict anything
+                if (bounds.isEmpty()) {
+                    return "";
+                }
+
+                return String.join(" AND " + field + " ", bounds) + " ";
             }
 
-            // Allow db-specific mutations
-            QueryValueMutator mutator = valueMutators.get(condition.getFieldName());
-            if (mutator != null) {
-                value = mutator.mutate(condition.getValue().toString());
+            if (condition.getMatchRule().equals(MatchRule.INCLUDES) || condition.getMatchRule().equals(MatchRule.EXCLUDES)) {
+                Collection<?> values = condition.getValue() instanceof Collection ? (Collection<?>) condition.getValue() : Collections.singletonList(condition.getValue());
+                if (values.isEmpty()) {
+                    return "";
+                }
+
+                List<String> elements = new ArrayList<>(values.size());
+                for (Object value : values) {
+                    elements.add(bind(condition.getFieldName(), value));
+                }
+
+                return (condition.getMatchRule().equals(MatchRule.EXCLUDES) ? "NOT IN (" : "IN (") + String.join(", ", elements) + ") ";
             }
 
+            String operator;
             if (condition.getMatchRule().equals(MatchRule.EQUALS)) {
-                fieldComparator += "= " + value + " ";
-            }
-            else if (condition.getMatchRule().equals(MatchRule.BETWEEN)) {
-                Range<?> range = (Range<?>) condition.getValue();
-                fieldComparator += "> " + range.lowerEndpoint() + " AND " + field + " < " + range.upperEndpoint() + " ";
+                operator = "=";
             }
             else if (condition.getMatchRule().equals(MatchRule.GREATER_THAN_EQUAL)) {
-                fieldComparator += ">= " + value + " ";
+                operator = ">=";
             }
             else if (condition.getMatchRule().equals(MatchRule.LESS_THAN_EQUAL)) {
-                fieldComparator += "<= " + value + " ";
+                operator = "<=";
+            }
+            else {
+                return "";
+            }
+
+            return operator + " " + bind(condition.getFieldName(), condition.getValue()) + " ";
+        }
+
+        /**
+         * Adds a value to the bound parameters, applying any mutator of its field.
+         *
+         * @param path DataQuery of the field
+         * @param value Object value
+         * @return String placeholder for the value
+         */
+        protected String bind(DataQuery path, Object value) {
+            // Allow db-specific mutations
+            QueryValueMutator mutator = valueMutators.get(path);
+            if (mutator != null) {
+                parameters.add(mutator.mutate(value.toString()));
+                return placeholders.get(path);
+            }
+
+            // Dates are stored as epochs in sql schemas
+            if (value instanceof Date) {
+                parameters.add(((Date) value).getTime() / 1000L);
+            } else if (value instanceof Number) {
+                parameters.add(value);
+            } else {
+                parameters.add(value.toString());
             }
-            // @todo handle includes, excludes
 
-            return fieldComparator;
+            return "?";
         }
 
         // @todo Pending DataQuery.last in sponge
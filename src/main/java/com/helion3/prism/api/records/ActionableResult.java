@@ -33,6 +33,7 @@ public class ActionableResult {
     private final boolean changeWasApplied;
     private final SkipReason skipReason;
     private final Transaction<?> transaction;
+    private final BlockChange blockChange;
 
     /**
      * Build a skipped actionable result.
@@ -52,14 +53,29 @@ public class ActionableResult {
         return new ActionableResult(transaction);
     }
 
+    /**
+     * Build a successful actionable result for a block change.
+     * @param blockChange
+     * @return
+     */
+    public static ActionableResult success(BlockChange blockChange) {
+        return new ActionableResult(null, blockChange);
+    }
+
     private ActionableResult(@Nullable Transaction<?> transaction) {
+        this(transaction, null);
+    }
+
+    private ActionableResult(@Nullable Transaction<?> transaction, @Nullable BlockChange blockChange) {
         this.transaction = transaction;
+        this.blockChange = blockChange;
         this.changeWasApplied = true;
         this.skipReason = null;
     }
 
     private ActionableResult(SkipReason skipReason) {
         this.transaction = null;
+        this.blockChange = null;
         this.changeWasApplied = false;
         this.skipReason = skipReason;
     }
@@ -80,6 +96,14 @@ public class ActionableResult {
         return Optional.ofNullable(transaction);
     }
 
+    /**
+     * Get any resulting block change, useful for reversals.
+     * @return Optional block change.
+     */
+    public Optional<BlockChange> getBlockChange() {
+        return Optional.ofNullable(blockChange);
+    }
+
     /**
      * Returns the skip reason, if any.
      * @return SKIP_REASON Reason a change was skipped.
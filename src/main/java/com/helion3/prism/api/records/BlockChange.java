@@ -0,0 +1,110 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.api.records;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.spongepowered.api.block.BlockSnapshot;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+/**
+ * A block change made by an applier. Only the position and both states
+ * are held rather than two full snapshots, except for a replaced tile
+ * entity whose snapshot is kept so its contents can be brought back.
+ */
+public class BlockChange {
+    private final UUID worldUuid;
+    private final int x;
+    private final int y;
+    private final int z;
+    private final BlockState original;
+    private final BlockState replacement;
+    private final BlockSnapshot originalSnapshot;
+
+    /**
+     * @param location Location of the block
+     * @param original BlockState before the change
+     * @param originalSnapshot BlockSnapshot before the change, only when it was a tile entity
+     * @param replacement BlockState after the change
+     */
+    public BlockChange(Location<World> location, BlockState original, @Nullable BlockSnapshot originalSnapshot, BlockState replacement) {
+        this.worldUuid = location.getExtent().getUniqueId();
+        this.x = location.getBlockX();
+        this.y = location.getBlockY();
+        this.z = location.getBlockZ();
+        this.original = original;
+        this.replacement = replacement;
+        this.originalSnapshot = originalSnapshot;
+    }
+
+    /**
+     * Get the UUID of the world the block is in.
+     * @return World UUID
+     */
+    public UUID getWorldUuid() {
+        return worldUuid;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+    /**
+     * Get the block state before the change.
+     * @return BlockState
+     */
+    public BlockState getOriginal() {
+        return original;
+    }
+
+    /**
+     * Get the snapshot before the change, present when the block was a
+     * tile entity.
+     * @return Optional BlockSnapshot
+     */
+    public Optional<BlockSnapshot> getOriginalSnapshot() {
+        return Optional.ofNullable(originalSnapshot);
+    }
+
+    /**
+     * Get the block state after the change.
+     * @return BlockState
+     */
+    public BlockState getReplacement() {
+        return replacement;
+    }
+}
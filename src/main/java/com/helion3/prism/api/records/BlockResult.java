@@ -28,18 +28,21 @@ import java.util.Optional;
 import com.google.common.base.Preconditions;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.block.BlockSnapshot;
+import org.spongepowered.api.block.BlockState;
 import org.spongepowered.api.data.DataView;
 import org.spongepowered.api.data.DataContainer;
-import org.spongepowered.api.data.Transaction;
+import org.spongepowered.api.data.DataQuery;
 import org.spongepowered.api.block.BlockSnapshot.Builder;
 
 import com.helion3.prism.util.BlockUtil;
 import com.helion3.prism.util.DataQueries;
+import com.helion3.prism.util.TypeUtil;
 import org.spongepowered.api.world.BlockChangeFlags;
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Represents a block change event record.
@@ -47,25 +50,42 @@ import javax.annotation.Nonnull;
 public class BlockResult extends ResultComplete implements Actionable {
     @Override
     public ActionableResult rollback() {
+        return apply(DataQueries.OriginalBlock);
+    }
 
-        Optional<Object> optionalOriginal = data.get(DataQueries.OriginalBlock);
+    @Override
+    public ActionableResult restore() {
+        return apply(DataQueries.ReplacementBlock);
+    }
 
-        if (!optionalOriginal.isPresent()) {
+    /**
+     * Places the stored block at its location. Blocks without tile data
+     * are set straight from their cached state, only blocks with tile data
+     * are rebuilt as a snapshot.
+     *
+     * @param query Query of the stored block to place
+     * @return ActionableResult
+     */
+    private ActionableResult apply(DataQuery query) {
+        Optional<Object> optionalBlock = data.get(query);
+        if (!optionalBlock.isPresent()) {
             return ActionableResult.skipped(SkipReason.INVALID);
         }
 
-        // Our data is stored with a different structure, so we'll need
-        // a little manual effort to reformat it.
-        DataView finalBlock = ((DataView) optionalOriginal.get()).copy();
-
         // Build World UUID / Vec3 data BlockSnapshot expects
         Optional<Object> optionalLocation = data.get(DataQueries.Location);
         if (!optionalLocation.isPresent()) {
             return ActionableResult.skipped(SkipReason.INVALID_LOCATION);
         }
 
-        // Format
-        finalBlock = formatBlockData(finalBlock, optionalLocation.get());
+        DataView block = (DataView) optionalBlock.get();
+        if (BlockUtil.isStateOnly(block)) {
+            return applyState(block, (DataView) optionalLocation.get());
+        }
+
+        // Our data is stored with a different structure, so we'll need
+        // a little manual effort to reformat it.
+        DataView finalBlock = formatBlockData(block.copy(), optionalLocation.get());
 
         Optional<BlockSnapshot> optionalSnapshot = Sponge.getRegistry().createBuilder(Builder.class).build(finalBlock);
         if (!optionalSnapshot.isPresent()) {
@@ -86,18 +106,63 @@ public class BlockResult extends ResultComplete implements Actionable {
         }
 
         // Current block in this space.
-        BlockSnapshot original = location.getBlock().snapshotFor(location);
+        BlockState original = location.getBlock();
+        BlockSnapshot originalSnapshot = snapshotTileEntity(location);
 
         // Actually restore!
-        if (!optionalSnapshot.get().restore(true, BlockChangeFlags.NONE)) {
+        if (!snapshot.restore(true, BlockChangeFlags.NONE)) {
             return ActionableResult.skipped(SkipReason.UNKNOWN);
         }
 
-        // Final block in this space.
-        BlockSnapshot resultingBlock = location.getBlock().snapshotFor(location);
+        return ActionableResult.success(new BlockChange(location, original, originalSnapshot, location.getBlock()));
+    }
 
-        return ActionableResult.success(new Transaction<>(original, resultingBlock));
+    /**
+     * Sets a block which has no tile data without building a snapshot.
+     *
+     * @param block Stored block
+     * @param location Stored location
+     * @return ActionableResult
+     */
+    private ActionableResult applyState(DataView block, DataView location) {
+        Optional<BlockState> state = block.getString(DataQueries.BlockState.then(DataQueries.BlockState)).flatMap(BlockUtil::getBlockState);
+        if (!state.isPresent()) {
+            return ActionableResult.skipped(SkipReason.INVALID);
+        }
 
+        Optional<World> world = location.get(DataQueries.WorldUuid).flatMap(TypeUtil::uuidFromObject).flatMap(Sponge.getServer()::getWorld);
+        Optional<Integer> x = location.getInt(DataQueries.X);
+        Optional<Integer> y = location.getInt(DataQueries.Y);
+        Optional<Integer> z = location.getInt(DataQueries.Z);
+        if (!world.isPresent() || !x.isPresent() || !y.isPresent() || !z.isPresent()) {
+            return ActionableResult.skipped(SkipReason.INVALID_LOCATION);
+        }
+
+        // Filter unsafe blocks
+        if (BlockUtil.rejectIllegalApplierBlock(state.get().getType())) {
+            return ActionableResult.skipped(SkipReason.ILLEGAL_BLOCK);
+        }
+
+        Location<World> target = world.get().getLocation(x.get(), y.get(), z.get());
+        BlockState original = target.getBlock();
+        BlockSnapshot originalSnapshot = snapshotTileEntity(target);
+        if (!target.setBlock(state.get(), BlockChangeFlags.NONE)) {
+            return ActionableResult.skipped(SkipReason.UNKNOWN);
+        }
+
+        return ActionableResult.success(new BlockChange(target, original, originalSnapshot, state.get()));
+    }
+
+    /**
+     * Snapshots a block about to be replaced if it's a tile entity, so
+     * undoing the change brings back its contents.
+     *
+     * @param location Location of the block
+     * @return BlockSnapshot, or null if the block isn't a tile entity
+     */
+    @Nullable
+    private BlockSnapshot snapshotTileEntity(Location<World> location) {
+        return location.getTileEntity().isPresent() ? location.createSnapshot() : null;
     }
 
     public DataView formatBlockData(DataView finalBlock, @Nonnull Object optionalLocation) {
@@ -125,57 +190,4 @@ public class BlockResult extends ResultComplete implements Actionable {
 
         return finalBlock;
     }
-
-    @Override
-    public ActionableResult restore() {
-
-        Optional<Object> optionalFinal = data.get(DataQueries.ReplacementBlock);
-        if (!optionalFinal.isPresent()) {
-            return ActionableResult.skipped(SkipReason.INVALID);
-        }
-
-        // Our data is stored with a different structure, so we'll need
-        // a little manual effort to reformat it.
-        DataView finalBlock = ((DataView) optionalFinal.get()).copy();
-
-        // Build World UUID / Vec3 data BlockSnapshot expects
-        Optional<Object> optionalLocation = data.get(DataQueries.Location);
-        if (!optionalLocation.isPresent()) {
-            return ActionableResult.skipped(SkipReason.INVALID_LOCATION);
-        }
-
-        // Format
-        finalBlock = formatBlockData(finalBlock, optionalLocation.get());
-
-        Optional<BlockSnapshot> optionalSnapshot = Sponge.getRegistry().createBuilder(Builder.class).build(finalBlock);
-        if (!optionalSnapshot.isPresent()) {
-            return ActionableResult.skipped(SkipReason.INVALID);
-        }
-
-        BlockSnapshot snapshot = optionalSnapshot.get();
-
-        if (!snapshot.getLocation().isPresent()) {
-            return ActionableResult.skipped(SkipReason.INVALID_LOCATION);
-        }
-
-        Location<World> location = snapshot.getLocation().get();
-
-        // Filter unsafe blocks
-        if (BlockUtil.rejectIllegalApplierBlock(snapshot.getState().getType())) {
-            return ActionableResult.skipped(SkipReason.ILLEGAL_BLOCK);
-        }
-
-        // Current block in this space.
-        BlockSnapshot original = location.getBlock().snapshotFor(location);
-
-        // Actually restore!
-        if (!optionalSnapshot.get().restore(true, BlockChangeFlags.NONE)) {
-            return ActionableResult.skipped(SkipReason.UNKNOWN);
-        }
-
-        // Final block in this space.
-        BlockSnapshot resultingBlock = location.getBlock().snapshotFor(location);
-        return ActionableResult.success(new Transaction<>(original, resultingBlock));
-
-    }
 }
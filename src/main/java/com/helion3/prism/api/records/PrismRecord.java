@@ -27,6 +27,7 @@ package com.helion3.prism.api.records;
 import com.google.common.base.Preconditions;
 import com.helion3.prism.Prism;
 import com.helion3.prism.api.data.PrismEvent;
+import com.helion3.prism.queues.RecordingExecutor;
 import com.helion3.prism.queues.RecordingQueue;
 import com.helion3.prism.util.DataQueries;
 import com.helion3.prism.util.DataUtil;
@@ -69,26 +70,46 @@ public class PrismRecord {
 
     private final String event;
     private final Object source;
+    private final Date created;
+    private final BlockType originalBlockType;
+    private final BlockType replacementBlockType;
     private final DataContainer dataContainer;
 
     /**
      * A final, save-ready record.
      *
-     * @param event         Event Id
-     * @param source        Source
-     * @param dataContainer DataContainer
+     * @param event                Event Id
+     * @param source               Source
+     * @param created              Time the event occurred
+     * @param originalBlockType    Original BlockType, may be null
+     * @param replacementBlockType Replacement BlockType, may be null
+     * @param dataContainer        DataContainer
      */
-    private PrismRecord(String event, Object source, DataContainer dataContainer) {
+    private PrismRecord(String event, Object source, Date created, BlockType originalBlockType, BlockType replacementBlockType, DataContainer dataContainer) {
         this.event = event;
         this.source = source;
+        this.created = created;
+        this.originalBlockType = originalBlockType;
+        this.replacementBlockType = replacementBlockType;
         this.dataContainer = dataContainer;
     }
 
     /**
-     * Save the current record.
+     * Save the current record, unless the {@link com.helion3.prism.api.filters.FilterList FilterList} rejects it.
      */
     public void save() {
-        DataUtil.writeToDataView(getDataContainer(), DataQueries.Created, new Date());
+        if (!Prism.getInstance().getFilterList().allows(getSource(), originalBlockType, replacementBlockType)) {
+            return;
+        }
+
+        queue();
+    }
+
+    /**
+     * Writes the common fields and queues the finished record for saving.
+     */
+    private void queue() {
+        DataUtil.writeToDataView(getDataContainer(), DataQueries.Created, getCreated());
         DataUtil.writeToDataView(getDataContainer(), DataQueries.EventName, getEvent());
 
         DataQuery causeKey = DataQueries.Cause;
@@ -102,24 +123,6 @@ public class PrismRecord {
 
         DataUtil.writeToDataView(getDataContainer(), causeKey, causeValue);
 
-        // Source filtered?
-        if (!Prism.getInstance().getFilterList().allowsSource(getSource())) {
-            return;
-        }
-
-        // Original block filtered?
-        Optional<BlockType> originalBlockType = getDataContainer().getObject(DataQueries.OriginalBlock.then(DataQueries.BlockState).then(DataQueries.BlockType), BlockType.class);
-        if (originalBlockType.map(Prism.getInstance().getFilterList()::allows).orElse(false)) {
-            return;
-        }
-
-        // Replacement block filtered?
-        Optional<BlockType> replacementBlockType = getDataContainer().getObject(DataQueries.ReplacementBlock.then(DataQueries.BlockState).then(DataQueries.BlockType), BlockType.class);
-        if (replacementBlockType.map(Prism.getInstance().getFilterList()::allows).orElse(false)) {
-            return;
-        }
-
-        // Queue the finished record for saving
         RecordingQueue.add(this);
     }
 
@@ -140,21 +143,38 @@ public class PrismRecord {
         return source;
     }
 
+    public Date getCreated() {
+        return created;
+    }
+
     public DataContainer getDataContainer() {
         return dataContainer;
     }
 
     /**
      * Build record event/action details.
+     *
+     * Block snapshots are immutable, so they're only kept as-is and
+     * serialized when the record is built. {@link #buildAndSave()} does
+     * that on a worker thread, keeping the cost on the server thread low.
+     * Locations read the world when serialized, so they're always written
+     * on the calling thread.
      */
     public static class EventBuilder {
 
         private final Object source;
+        private final Date created;
         private String event;
         private DataContainer dataContainer;
+        private BlockSnapshot originalBlock;
+        private BlockSnapshot replacementBlock;
+        private BlockType originalBlockType;
+        private BlockType replacementBlockType;
+        private Location<World> location;
 
         protected EventBuilder(Object source) {
             this.source = source;
+            this.created = new Date();
             this.event = "unknown";
             this.dataContainer = DataContainer.createNew();
         }
@@ -167,7 +187,8 @@ public class PrismRecord {
         public EventBuilder blockOriginal(BlockSnapshot block) {
             Preconditions.checkNotNull(block);
 
-            DataUtil.writeToDataView(getDataContainer(), DataQueries.OriginalBlock, formatBlockDataContainer(block));
+            this.originalBlock = block;
+            this.originalBlockType = block.getState().getType();
             return this;
         }
 
@@ -179,7 +200,8 @@ public class PrismRecord {
         public EventBuilder blockReplacement(BlockSnapshot block) {
             Preconditions.checkNotNull(block);
 
-            DataUtil.writeToDataView(getDataContainer(), DataQueries.ReplacementBlock, formatBlockDataContainer(block));
+            this.replacementBlock = block;
+            this.replacementBlockType = block.getState().getType();
             return this;
         }
 
@@ -300,11 +322,7 @@ public class PrismRecord {
         public EventBuilder location(Location<World> location) {
             Preconditions.checkNotNull(location);
 
-            DataContainer container = location.toContainer();
-            container.remove(DataQueries.BlockType);
-            container.remove(DataQueries.ContentVersion);
-            container.remove(DataQueries.WorldName);
-            DataUtil.writeToDataView(getDataContainer(), DataQueries.Location, location);
+            this.location = location;
             return this;
         }
 
@@ -345,6 +363,28 @@ public class PrismRecord {
             return blockData;
         }
 
+        /**
+         * Writes the captured snapshots and location.
+         *
+         * @param container   DataContainer to write to
+         * @param original    Original BlockSnapshot, may be null
+         * @param replacement Replacement BlockSnapshot, may be null
+         * @param location    Serialized Location, may be null
+         */
+        private void writeDeferred(DataContainer container, BlockSnapshot original, BlockSnapshot replacement, DataView location) {
+            if (original != null) {
+                DataUtil.writeToDataView(container, DataQueries.OriginalBlock, formatBlockDataContainer(original));
+            }
+
+            if (replacement != null) {
+                DataUtil.writeToDataView(container, DataQueries.ReplacementBlock, formatBlockDataContainer(replacement));
+            }
+
+            if (location != null) {
+                DataUtil.writeToDataView(container, DataQueries.Location, location);
+            }
+        }
+
         /**
          * Creates a new {@link PrismRecord}.
          *
@@ -352,14 +392,40 @@ public class PrismRecord {
          */
         public PrismRecord build() {
             Preconditions.checkState(Sponge.getRegistry().getType(PrismEvent.class, getEvent()).isPresent(), getEvent() + " is not registered");
-            return new PrismRecord(getEvent(), getSource(), getDataContainer());
+
+            writeDeferred(getDataContainer(), originalBlock, replacementBlock, location != null ? location.toContainer() : null);
+            originalBlock = null;
+            replacementBlock = null;
+            location = null;
+
+            return new PrismRecord(getEvent(), getSource(), created, originalBlockType, replacementBlockType, getDataContainer());
         }
 
         /**
-         * Creates a new {@link PrismRecord} and immediately saves it.
+         * Creates a new {@link PrismRecord} and saves it. Serializing the
+         * captured snapshots happens on a worker thread, the builder
+         * shouldn't be changed afterwards.
+         *
+         * Filtering happens up front, so records which are filtered out
+         * are rejected before anything is serialized.
          */
         public void buildAndSave() {
-            build().save();
+            Preconditions.checkState(Sponge.getRegistry().getType(PrismEvent.class, getEvent()).isPresent(), getEvent() + " is not registered");
+
+            if (!Prism.getInstance().getFilterList().allows(getSource(), originalBlockType, replacementBlockType)) {
+                return;
+            }
+
+            String event = getEvent();
+            DataContainer container = getDataContainer();
+            BlockSnapshot original = originalBlock;
+            BlockSnapshot replacement = replacementBlock;
+            DataView location = this.location != null ? this.location.toContainer() : null;
+
+            RecordingExecutor.execute(() -> {
+                writeDeferred(container, original, replacement, location);
+                new PrismRecord(event, getSource(), created, originalBlockType, replacementBlockType, container).queue();
+            });
         }
 
         private Object getSource() {
@@ -0,0 +1,52 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.api.storage;
+
+import java.util.List;
+
+import org.spongepowered.api.data.DataContainer;
+
+/**
+ * Thrown when storage wrote only part of the given records. The cause
+ * tells why the rest failed.
+ */
+public class PartialWriteException extends Exception {
+    private static final long serialVersionUID = 4838160672019035541L;
+
+    private final transient List<DataContainer> unwritten;
+
+    public PartialWriteException(List<DataContainer> unwritten, Throwable cause) {
+        super(cause.getMessage(), cause);
+        this.unwritten = unwritten;
+    }
+
+    /**
+     * Returns the records which weren't written.
+     *
+     * @return List of records
+     */
+    public List<DataContainer> getUnwritten() {
+        return unwritten;
+    }
+}
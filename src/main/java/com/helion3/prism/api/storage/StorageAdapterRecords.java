@@ -52,6 +52,26 @@ public interface StorageAdapterRecords {
      */
     CompletableFuture<List<Result>> query(QuerySession session, boolean translate) throws Exception;
 
+    /**
+     * Execute a query session, handing results to the consumer in chunks
+     * as they're read instead of holding all of them at once. Blocks
+     * until every chunk was consumed or the consumer stopped.
+     *
+     * @param session QuerySession
+     * @param translate Translate player UUIDs -> Last known names
+     * @param chunkSize Maximum amount of results per chunk
+     * @param consumer Called for each chunk
+     * @throws Exception Abstract DB or query/handler exceptions
+     */
+    default void stream(QuerySession session, boolean translate, int chunkSize, ResultConsumer consumer) throws Exception {
+        List<Result> results = query(session, translate).get();
+        for (int index = 0; index < results.size(); index += chunkSize) {
+            if (!consumer.accept(results.subList(index, Math.min(index + chunkSize, results.size())))) {
+                return;
+            }
+        }
+    }
+
     /**
      * Given a {@link Query} this will remove all matching records.
      *
@@ -60,4 +80,18 @@ public interface StorageAdapterRecords {
      * @throws Exception Abstract DB or query/handler exceptions
      */
     StorageDeleteResult delete(Query query) throws Exception;
+
+    /**
+     * Receives chunks of query results.
+     */
+    @FunctionalInterface
+    interface ResultConsumer {
+
+        /**
+         * @param results List of results
+         * @return Whether to continue with the next chunk
+         * @throws Exception If handling the results failed, stops the query
+         */
+        boolean accept(List<Result> results) throws Exception;
+    }
 }
@@ -28,10 +28,9 @@ import com.helion3.prism.Prism;
 import com.helion3.prism.api.flags.Flag;
 import com.helion3.prism.api.query.QuerySession;
 import com.helion3.prism.api.query.Sort;
-import com.helion3.prism.api.records.Actionable;
 import com.helion3.prism.api.records.ActionableResult;
-import com.helion3.prism.api.records.Result;
 import com.helion3.prism.util.*;
+import org.spongepowered.api.block.BlockType;
 import org.spongepowered.api.command.CommandResult;
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.command.args.GenericArguments;
@@ -39,12 +38,16 @@ import org.spongepowered.api.command.spec.CommandSpec;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.scheduler.Task;
 import org.spongepowered.api.text.Text;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
 
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ApplierCommand {
 
@@ -77,72 +80,103 @@ public class ApplierCommand {
     }
 
     /**
-     * Use a designated QuerySession
+     * Use a designated QuerySession. Results are read a chunk at a time and
+     * applied by an {@link ApplierTask} within a per-tick time budget, so
+     * only one chunk of records is held in memory.
+     *
      * @param session
      * @param sort
      */
     public static void runApplier(QuerySession session, Sort sort) {
         session.getQuery().setLimit(Prism.getInstance().getConfig().getLimitCategory().getMaximumActionable());
         CommandSource source = session.getCommandSource();
-        try {
-            List<ActionableResult> actionResults = new ArrayList<>();
-            // Iterate query results
-            CompletableFuture<List<Result>> futureResults = Prism.getInstance().getStorageAdapter().records().query(session, false);
-            futureResults.thenAccept(results -> {
-                if (results.isEmpty()) {
+        int chunkSize = Math.max(Prism.getInstance().getConfig().getStorageCategory().getQueryFetchSize(), 1);
+
+        String identifier = source.getIdentifier();
+        ApplierTask applier = new ApplierTask(source, sort, Prism.getInstance().getConfig().getLimitCategory().getApplierTickBudget());
+        if (Prism.getInstance().getActiveAppliers().putIfAbsent(identifier, applier) != null) {
+            source.sendMessage(Format.error("You already have a rollback or restore running, use /pr cancel to stop it."));
+            return;
+        }
+
+        Task.builder().async().execute(() -> {
+            applier.start();
+            try {
+                AtomicBoolean found = new AtomicBoolean();
+
+                // Iterate query results, applying each chunk before reading the next one
+                Prism.getInstance().getStorageAdapter().records().stream(session, false, chunkSize, results -> {
+                    if (!found.getAndSet(true)) {
+                        // Clean before applying, so restored liquids and blocks aren't removed again
+                        CompletableFuture.anyOf(clean(session), applier.whenStopped()).get();
+                    }
+
+                    applier.offer(results).get();
+                    return !applier.isCancelled() && !applier.whenStopped().isDone();
+                });
+
+                if (!found.get()) {
                     source.sendMessage(Format.error("No results."));
-                } else {
-                    try {
-                        // Iterate record results
-                        Task.builder().execute(() -> {
-                            results.forEach(result -> {
-                                try {
-                                    if (result instanceof Actionable) {
-
-                                        Actionable actionable = (Actionable) result;
-
-                                        if (sort.equals(Sort.NEWEST_FIRST)) {
-                                            actionResults.add(actionable.rollback());
-                                        } else {
-                                            actionResults.add(actionable.restore());
-                                        }
-                                    }
-                                } catch (Exception e) {
-                                    source.sendMessage(Format.error(Text.of(e.getMessage())));
-                                    e.printStackTrace();
-                                }
-                            });
-                            sendResults(source, actionResults);
-                        }).submit(Prism.getInstance());
-                    } catch(Exception e) {
-                        e.printStackTrace();
+                    return;
+                }
+
+                Task.builder().execute(() -> {
+                    if (applier.isCancelled()) {
+                        source.sendMessage(Format.error("Cancelled, changes made so far are kept."));
                     }
 
-                    if (source instanceof Player) {
-                        int changes = 0;
+                    sendResults(source, applier.getActionResults());
+                }).submit(Prism.getInstance());
+            } catch (Exception e) {
+                source.sendMessage(Format.error(Text.of(e.getMessage())));
+                e.printStackTrace();
+            } finally {
+                applier.stop();
+                Prism.getInstance().getActiveAppliers().remove(identifier, applier);
+            }
+        }).submit(Prism.getInstance());
+    }
 
-                        if (session.hasFlag(Flag.CLEAN)) {
-                            changes += WorldUtil.removeIllegalBlocks(
-                                ((Player) source).getLocation(), session.getRadius());
-                            changes += WorldUtil.removeItemEntitiesAroundLocation(((Player) source).getLocation(), session.getRadius());
-                        }
+    /**
+     * Applies the clean and drain flags around the player. Blocks for both
+     * flags are removed in a single sweep over the area, started on the
+     * main thread.
+     *
+     * @param session QuerySession
+     * @return CompletableFuture completed once the area has been swept
+     */
+    private static CompletableFuture<Void> clean(QuerySession session) {
+        CommandSource source = session.getCommandSource();
+        if (!(source instanceof Player) || (!session.hasFlag(Flag.CLEAN) && !session.hasFlag(Flag.DRAIN))) {
+            return CompletableFuture.completedFuture(null);
+        }
 
-                        if (session.hasFlag(Flag.DRAIN)) {
-                            changes += WorldUtil.removeLiquidsAroundLocation(
-                                ((Player) source).getLocation(), session.getRadius());
-                        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Task.builder().execute(() -> {
+            Location<World> location = ((Player) source).getLocation();
+            Set<BlockType> types = new HashSet<>();
+            int items = 0;
 
-                        if (changes > 0) {
-                            source.sendMessage(Format.bonus("Cleaning area..."));
-                        }
-                    }
+            if (session.hasFlag(Flag.CLEAN)) {
+                types.addAll(WorldUtil.getIllegalBlockTypes());
+                items = WorldUtil.removeItemEntitiesAroundLocation(location, session.getRadius());
+            }
+
+            if (session.hasFlag(Flag.DRAIN)) {
+                types.addAll(BlockUtil.getLiquidBlockTypes());
+            }
 
+            int removedItems = items;
+            WorldUtil.removeAroundFromLocation(types, location, session.getRadius()).whenComplete((changes, ex) -> {
+                if (changes != null && changes + removedItems > 0) {
+                    source.sendMessage(Format.bonus("Cleaning area..."));
                 }
+
+                future.complete(null);
             });
-        } catch (Exception e) {
-            source.sendMessage(Format.error(Text.of(e.getMessage())));
-            e.printStackTrace();
-        }
+        }).submit(Prism.getInstance());
+
+        return future;
     }
 
     private static void sendResults(CommandSource source, List<ActionableResult> actionResults) {
@@ -173,7 +207,7 @@ public class ApplierCommand {
         ));
 
         if (source instanceof Player) {
-            Prism.getInstance().getLastActionResults().put(((Player) source).getUniqueId(), actionResults);
+            Prism.getInstance().getUndoJournal().put(((Player) source).getUniqueId(), actionResults);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,222 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.commands;
+
+import com.helion3.prism.api.query.Sort;
+import com.helion3.prism.api.records.Actionable;
+import com.helion3.prism.api.records.ActionableResult;
+import com.helion3.prism.api.records.Result;
+import com.helion3.prism.util.DataQueries;
+import com.helion3.prism.util.Format;
+import com.helion3.prism.util.SpatialKey;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.data.DataView;
+import org.spongepowered.api.text.Text;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Rolls back or restores results on the main thread within the per-tick
+ * budget of a {@link BudgetedTask}.
+ *
+ * Results are handed over a chunk at a time with {@link #offer(List)} and
+ * applied grouped by world chunk, so each chunk is loaded once per batch.
+ * Changes to the same block keep their order.
+ */
+public class ApplierTask extends BudgetedTask {
+
+    private final Sort sort;
+    private final List<ActionableResult> actionResults = new ArrayList<>();
+    private final CompletableFuture<Void> stopped = new CompletableFuture<>();
+    private volatile boolean cancelled;
+    private Iterator<Result> pending;
+    private CompletableFuture<Void> drained;
+
+    /**
+     * @param source CommandSource running the applier
+     * @param sort Sort deciding between rollback and restore
+     * @param budget Time in milliseconds which may be spent per tick
+     */
+    public ApplierTask(CommandSource source, Sort sort, int budget) {
+        super(source, budget);
+        this.sort = sort;
+    }
+
+    /**
+     * Stops the applier, results which haven't been applied are dropped.
+     * Whoever waits on a chunk is released, also when the server stops
+     * and the scheduled task is cancelled.
+     */
+    @Override
+    protected void onStop() {
+        finish();
+        stopped.complete(null);
+    }
+
+    /**
+     * Returns a future completed once the applier has stopped.
+     *
+     * @return CompletableFuture
+     */
+    public CompletableFuture<Void> whenStopped() {
+        return stopped;
+    }
+
+    /**
+     * Stops applying any further results.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns the outcome of each applied result. Only read this from the
+     * main thread.
+     *
+     * @return List of {@link ActionableResult}s
+     */
+    public List<ActionableResult> getActionResults() {
+        return actionResults;
+    }
+
+    /**
+     * Queues a chunk of results to be applied, replacing any previous chunk.
+     *
+     * @param results List of results
+     * @return CompletableFuture completed once the chunk has been applied or the applier stops
+     */
+    public synchronized CompletableFuture<Void> offer(List<Result> results) {
+        finish();
+        if (stopped.isDone()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        pending = orderByChunk(results).iterator();
+        drained = new CompletableFuture<>();
+        return drained;
+    }
+
+    @Override
+    protected boolean tick() {
+        if (pending == null) {
+            return false;
+        }
+
+        long start = System.nanoTime();
+        while (!cancelled && pending.hasNext()) {
+            apply(pending.next());
+
+            if (System.nanoTime() - start >= budget) {
+                break;
+            }
+        }
+
+        if (cancelled || !pending.hasNext()) {
+            finish();
+        }
+
+        return false;
+    }
+
+    @Override
+    protected String getProgress() {
+        return "Applied " + actionResults.size() + " changes so far...";
+    }
+
+    /**
+     * Releases whoever is waiting on the current chunk.
+     */
+    private void finish() {
+        pending = null;
+        if (drained != null) {
+            drained.complete(null);
+            drained = null;
+        }
+    }
+
+    /**
+     * Rolls back or restores a single result.
+     *
+     * @param result Result
+     */
+    private void apply(Result result) {
+        try {
+            if (result instanceof Actionable) {
+                Actionable actionable = (Actionable) result;
+
+                if (sort.equals(Sort.NEWEST_FIRST)) {
+                    actionResults.add(actionable.rollback());
+                } else {
+                    actionResults.add(actionable.restore());
+                }
+            }
+        } catch (Exception e) {
+            source.sendMessage(Format.error(Text.of(e.getMessage())));
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Groups results by the world chunk they're in. Chunks keep the order
+     * of their first result, results keep their order within a chunk.
+     *
+     * @param results List of results
+     * @return List of results ordered by chunk
+     */
+    private static List<Result> orderByChunk(List<Result> results) {
+        Map<String, List<Result>> chunks = new LinkedHashMap<>();
+        for (Result result : results) {
+            chunks.computeIfAbsent(getChunkKey(result), key -> new ArrayList<>()).add(result);
+        }
+
+        List<Result> ordered = new ArrayList<>(results.size());
+        chunks.values().forEach(ordered::addAll);
+        return ordered;
+    }
+
+    private static String getChunkKey(Result result) {
+        Optional<DataView> location = result.data.getView(DataQueries.Location);
+        if (!location.isPresent()) {
+            return "";
+        }
+
+        Optional<Integer> x = location.get().getInt(DataQueries.X);
+        Optional<Integer> z = location.get().getInt(DataQueries.Z);
+        if (!x.isPresent() || !z.isPresent()) {
+            return "";
+        }
+
+        return location.get().getString(DataQueries.WorldUuid).orElse("") + "/" + SpatialKey.of(x.get(), z.get());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.commands;
+
+import com.helion3.prism.Prism;
+import com.helion3.prism.util.Format;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.scheduler.Task;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Work which runs on the main thread every tick, spending at most a fixed
+ * amount of time per tick so large changes don't stall the server. The
+ * command source is told about the progress every few seconds.
+ */
+public abstract class BudgetedTask implements Consumer<Task> {
+
+    private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+
+    protected final CommandSource source;
+    protected final long budget;
+    private long lastProgress;
+    private Task task;
+
+    /**
+     * @param source CommandSource running the task
+     * @param budget Time in milliseconds which may be spent per tick
+     */
+    protected BudgetedTask(CommandSource source, int budget) {
+        this.source = source;
+        this.budget = TimeUnit.MILLISECONDS.toNanos(Math.max(budget, 1));
+    }
+
+    /**
+     * Schedules the task to run every tick.
+     */
+    public synchronized void start() {
+        lastProgress = System.nanoTime();
+        task = Task.builder().intervalTicks(1).execute(this).submit(Prism.getInstance());
+    }
+
+    /**
+     * Stops running the task.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+
+        onStop();
+    }
+
+    @Override
+    public synchronized void accept(Task task) {
+        if (tick()) {
+            stop();
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (now - lastProgress >= PROGRESS_INTERVAL) {
+            lastProgress = now;
+            source.sendMessage(Format.subduedHeading(getProgress()));
+        }
+    }
+
+    /**
+     * Does as much work as the budget allows.
+     *
+     * @return True once all work is done
+     */
+    protected abstract boolean tick();
+
+    /**
+     * Returns the message telling how far the task has come.
+     *
+     * @return String progress message
+     */
+    protected abstract String getProgress();
+
+    /**
+     * Called once the task stopped running, whether it's done or not.
+     */
+    protected void onStop() {
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.commands;
+
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.spec.CommandSpec;
+import org.spongepowered.api.text.Text;
+
+import com.helion3.prism.Prism;
+import com.helion3.prism.util.Format;
+
+public class CancelCommand {
+    private CancelCommand() {}
+
+    public static CommandSpec getCommand() {
+        return CommandSpec.builder()
+            .description(Text.of("Stop your running rollback or restore."))
+            .permission("prism.rollback")
+            .executor((source, args) -> {
+                ApplierTask applier = Prism.getInstance().getActiveAppliers().get(source.getIdentifier());
+                if (applier == null) {
+                    source.sendMessage(Format.error("You have no rollback or restore running."));
+                    return CommandResult.empty();
+                }
+
+                applier.cancel();
+                source.sendMessage(Format.heading("Cancelling, changes made so far are kept."));
+
+                return CommandResult.success();
+            }).build();
+    }
+}
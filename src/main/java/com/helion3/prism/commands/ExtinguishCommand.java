@@ -47,10 +47,8 @@ public class ExtinguishCommand {
                 }
 
                 int radius = args.<Integer>getOne("radius").get();
-                int changes = WorldUtil.removeAroundFromLocation(
-                    BlockTypes.FIRE, ((Player) source).getLocation(), radius);
-
-                source.sendMessage(Format.message(String.format("Removed %d matches within %d blocks", changes, radius)));
+                WorldUtil.removeAroundFromLocation(BlockTypes.FIRE, ((Player) source).getLocation(), radius).thenAccept(changes ->
+                    source.sendMessage(Format.message(String.format("Removed %d matches within %d blocks", changes, radius))));
 
                 return CommandResult.success();
             })
@@ -38,10 +38,13 @@ public class HelpCommand {
             .executor((source, args) -> {
                 source.sendMessage(Format.message("/pr [l|lookup] (params)", TextColors.GRAY, " - Query the database."));
                 source.sendMessage(Format.message("/pr near", TextColors.GRAY, " - Quick lookup of nearby activity."));
+                source.sendMessage(Format.message("/pr next", TextColors.GRAY, " - Show the next page of your last lookup."));
                 source.sendMessage(Format.message("/pr [rb|rollback] (params)", TextColors.GRAY, " - Reverse changes, limited by parameters."));
                 source.sendMessage(Format.message("/pr [rs|restore] (params)", TextColors.GRAY, " - Re-apply changes, limited by parameters."));
+                source.sendMessage(Format.message("/pr cancel", TextColors.GRAY, " - Stop your running rollback/restore."));
                 source.sendMessage(Format.message("/pr undo", TextColors.GRAY, " - Reverse your last rollback/restore."));
                 source.sendMessage(Format.message("/pr i", TextColors.GRAY, " - Toggle the inspection wand."));
+                source.sendMessage(Format.message("/pr replay-deadletter", TextColors.GRAY, " - Save records which previously failed to save."));
                 return CommandResult.success();
             }).build();
     }
@@ -51,11 +51,14 @@ public class PrismCommands {
         builder.put(ImmutableList.of("i", "wand"), InspectCommand.getCommand());
         builder.put(ImmutableList.of("l", "lookup"), LookupCommand.getCommand());
         builder.put(ImmutableList.of("near"), NearCommand.getCommand());
+        builder.put(ImmutableList.of("next"), NextCommand.getCommand());
         // Sort order newest first for rollback, and oldest first for restore.
         builder.put(ImmutableList.of("rb", "rollback"), ApplierCommand.getCommand(Sort.NEWEST_FIRST));
         builder.put(ImmutableList.of("rs", "restore"), ApplierCommand.getCommand(Sort.OLDEST_FIRST));
+        builder.put(ImmutableList.of("cancel"), CancelCommand.getCommand());
         builder.put(ImmutableList.of("undo"), UndoCommand.getCommand());
         builder.put(ImmutableList.of("ext"), ExtinguishCommand.getCommand());
+        builder.put(ImmutableList.of("replay-deadletter"), ReplayDeadLetterCommand.getCommand());
         builder.put(ImmutableList.of("?", "help"), HelpCommand.getCommand());
 
         return CommandSpec.builder()
@@ -23,25 +23,13 @@
  */
 package com.helion3.prism.commands;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-import com.google.common.collect.Lists;
 import org.spongepowered.api.command.CommandException;
-import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.command.CommandResult;
 import org.spongepowered.api.command.spec.CommandSpec;
-import org.spongepowered.api.entity.Entity;
 import org.spongepowered.api.entity.living.player.Player;
-import org.spongepowered.api.text.Text;
 
 import com.helion3.prism.Prism;
-import com.helion3.prism.api.records.ActionableResult;
 import com.helion3.prism.util.Format;
-import com.helion3.prism.util.Template;
-import com.helion3.prism.util.Translation;
-import org.spongepowered.api.world.BlockChangeFlags;
 
 public class UndoCommand {
     private UndoCommand() {}
@@ -54,59 +42,16 @@ public class UndoCommand {
                     throw new CommandException(Format.error("You must be a player to use this command."));
                 }
 
-                List<ActionableResult> results = Prism.getInstance().getLastActionResults().get(((Player) source).getUniqueId());
-                if (results == null || results.isEmpty()) {
-                    throw new CommandException(Format.error("You have no valid actions to undo."));
-                }
-                // Reverse the order of the list to undo last action.
-                results = Lists.reverse(results);
-
-                int applied = 0;
-                int skipped = 0;
-
-                for (ActionableResult result : results) {
-                    if (result.getTransaction().isPresent()) {
-                        Object rawOriginal = result.getTransaction().get().getOriginal();
-                        Object rawFinal = result.getTransaction().get().getFinal();
-
-                        if (rawOriginal instanceof BlockSnapshot) {
-                            if (((BlockSnapshot)rawOriginal).restore(true, BlockChangeFlags.NONE)) {
-                                applied++;
-                            } else {
-                                skipped++;
-                            }
-                        }
-
-                        if (rawFinal instanceof Entity) {
-                            Entity entity = (Entity) rawFinal;
-                            if (!entity.isRemoved()) {
-                                entity.remove();
-                                applied++;
-                            } else {
-                                skipped++;
-                            }
-                        }
+                // Spilled actions are read async, the future completes on the main thread
+                Prism.getInstance().getUndoJournal().take(((Player) source).getUniqueId()).thenAccept(entry -> {
+                    if (!entry.isPresent() || entry.get().size() == 0) {
+                        source.sendMessage(Format.error("You have no valid actions to undo."));
+                        return;
                     }
-                    else {
-                        skipped++;
-                    }
-                }
-
-                Map<String, String> tokens = new HashMap<>();
-                tokens.put("appliedCount", "" + applied);
-                tokens.put("skippedCount", "" + skipped);
-
-                final String messageTemplate;
-                if (skipped > 0) {
-                    messageTemplate = Translation.from("rollback.success.withskipped");
-                } else {
-                    messageTemplate = Translation.from("rollback.success");
-                }
 
-                source.sendMessage(Format.heading(
-                    Text.of(Template.parseTemplate(messageTemplate, tokens)),
-                    " ", Format.bonus(Translation.from("rollback.success.bonus"))
-                ));
+                    // Reverts the last action first, spread over ticks
+                    new UndoTask(source, entry.get(), Prism.getInstance().getConfig().getLimitCategory().getApplierTickBudget()).start();
+                });
 
                 return CommandResult.success();
             })
@@ -0,0 +1,89 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.commands;
+
+import com.helion3.prism.util.Format;
+import com.helion3.prism.util.Template;
+import com.helion3.prism.util.Translation;
+import com.helion3.prism.util.UndoJournal;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.text.Text;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reverts an undo journal entry on the main thread within the per-tick
+ * budget of a {@link BudgetedTask}.
+ */
+public class UndoTask extends BudgetedTask {
+
+    private final UndoJournal.Entry entry;
+
+    /**
+     * @param source CommandSource running the undo
+     * @param entry Entry to revert
+     * @param budget Time in milliseconds which may be spent per tick
+     */
+    public UndoTask(CommandSource source, UndoJournal.Entry entry, int budget) {
+        super(source, budget);
+        this.entry = entry;
+    }
+
+    @Override
+    protected boolean tick() {
+        if (entry.undo(budget)) {
+            sendResult();
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    protected String getProgress() {
+        return "Reverted " + entry.getAppliedCount() + " changes so far...";
+    }
+
+    private void sendResult() {
+        int applied = entry.getAppliedCount();
+        int skipped = entry.size() - applied + entry.getSkippedCount();
+
+        Map<String, String> tokens = new HashMap<>();
+        tokens.put("appliedCount", "" + applied);
+        tokens.put("skippedCount", "" + skipped);
+
+        final String messageTemplate;
+        if (skipped > 0) {
+            messageTemplate = Translation.from("rollback.success.withskipped");
+        } else {
+            messageTemplate = Translation.from("rollback.success");
+        }
+
+        source.sendMessage(Format.heading(
+            Text.of(Template.parseTemplate(messageTemplate, tokens)),
+            " ", Format.bonus(Translation.from("rollback.success.bonus"))
+        ));
+    }
+}
@@ -39,6 +39,7 @@ public class GeneralCategory {
     @Setting(value = "debug", comment = "For debugging purposes")
     private boolean debug = false;
 
+    // Version of this configuration file, storage keeps its own schema version
     @Setting(value = "schema-version")
     private int schemaVersion = 2;
 
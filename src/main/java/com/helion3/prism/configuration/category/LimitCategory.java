@@ -30,6 +30,9 @@ import ninja.leaping.configurate.objectmapping.serialize.ConfigSerializable;
 @ConfigSerializable
 public class LimitCategory {
 
+    @Setting(value = "applier-tick-budget", comment = "Time in milliseconds a rollback or restore may spend applying changes each tick")
+    private int applierTickBudget = 5;
+
     @Setting(value = "maximum-actionable")
     private int maximumActionable = 10000;
 
@@ -39,6 +42,30 @@ public class LimitCategory {
     @Setting(value = "maximum-radius")
     private int maximumRadius = 100;
 
+    @Setting(value = "lookup-page-size")
+    private int lookupPageSize = 15;
+
+    @Setting(value = "undo-maximum-changes", comment = ""
+            + "Maximum amount of changes per player kept in memory for /pr undo\n"
+            + " - Tile entities count as more than one change, depending on their data")
+    private int undoMaximumChanges = 100000;
+
+    @Setting(value = "undo-maximum-total-changes", comment = ""
+            + "Maximum amount of changes of all players kept in memory for /pr undo\n"
+            + " - The least recently used are dropped first")
+    private int undoMaximumTotalChanges = 500000;
+
+    @Setting(value = "undo-spill", comment = "Should changes which don't fit in memory be written to disk, keeping them undoable?")
+    private boolean undoSpill = true;
+
+    public int getApplierTickBudget() {
+        return applierTickBudget;
+    }
+
+    public void setApplierTickBudget(int applierTickBudget) {
+        this.applierTickBudget = applierTickBudget;
+    }
+
     public int getMaximumActionable() {
         return maximumActionable;
     }
@@ -62,4 +89,36 @@ public class LimitCategory {
     public void setMaximumRadius(int maximumRadius) {
         this.maximumRadius = maximumRadius;
     }
-}
\ No newline at end of file
+
+    public int getLookupPageSize() {
+        return lookupPageSize;
+    }
+
+    public void setLookupPageSize(int lookupPageSize) {
+        this.lookupPageSize = lookupPageSize;
+    }
+
+    public int getUndoMaximumChanges() {
+        return undoMaximumChanges;
+    }
+
+    public void setUndoMaximumChanges(int undoMaximumChanges) {
+        this.undoMaximumChanges = undoMaximumChanges;
+    }
+
+    public int getUndoMaximumTotalChanges() {
+        return undoMaximumTotalChanges;
+    }
+
+    public void setUndoMaximumTotalChanges(int undoMaximumTotalChanges) {
+        this.undoMaximumTotalChanges = undoMaximumTotalChanges;
+    }
+
+    public boolean isUndoSpill() {
+        return undoSpill;
+    }
+
+    public void setUndoSpill(boolean undoSpill) {
+        this.undoSpill = undoSpill;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.helion3.prism.configuration.category;
+
+import com.google.common.collect.Lists;
+import ninja.leaping.configurate.objectmapping.Setting;
+import ninja.leaping.configurate.objectmapping.serialize.ConfigSerializable;
+
+import java.util.List;
+
+@ConfigSerializable
+public class ShardCategory {
+
+    @Setting(value = "address", comment = ""
+            + "The address and port for the database\n"
+            + " - Specify as 'host:port' if it differs from default")
+    private String address = "localhost";
+
+    @Setting(value = "database", comment = "The name of the database")
+    private String database = "prism";
+
+    @Setting(value = "engine", comment = ""
+            + "The database engine\n"
+            + "   (H2, MongoDB, MySQL)")
+    private String engine = "h2";
+
+    @Setting(value = "mysql-driver", comment = ""
+            + "The SQL driver to use when using "
+            + "MySQL storage engine\n"
+            + "   (MySQL, MariaDB)")
+    private String mysqlDriver = "mysql";
+
+    @Setting(value = "password", comment = "Credential for the database")
+    private String password = "";
+
+    @Setting(value = "username", comment = "Credential for the database")
+    private String username = "prism";
+
+    @Setting(value = "worlds", comment = ""
+            + "UUIDs of the worlds whose records are stored in this shard\n"
+            + " - Only used when sharding by world")
+    private List<String> worlds = Lists.newArrayList();
+
+    /**
+     * Creates a shard describing the main database of the storage settings.
+     *
+     * @param storage StorageCategory
+     * @return ShardCategory
+     */
+    public static ShardCategory of(StorageCategory storage) {
+        ShardCategory shard = new ShardCategory();
+        shard.setAddress(storage.getAddress());
+        shard.setDatabase(storage.getDatabase());
+        shard.setEngine(storage.getEngine());
+        shard.setMysqlDriver(storage.getMysqlDriver());
+        shard.setPassword(storage.getPassword());
+        shard.setUsername(storage.getUsername());
+        return shard;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
+    public String getDatabase() {
+        return database;
+    }
+
+    public void setDatabase(String database) {
+        this.database = database;
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+
+    public String getMysqlDriver() {
+        return mysqlDriver;
+    }
+
+    public void setMysqlDriver(String mysqlDriver) {
+        this.mysqlDriver = mysqlDriver;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public List<String> getWorlds() {
+        return worlds;
+    }
+
+    public void setWorlds(List<String> worlds) {
+        this.worlds = worlds;
+    }
+}
@@ -24,9 +24,12 @@
 
 package com.helion3.prism.configuration.category;
 
+import com.google.common.collect.Lists;
 import ninja.leaping.configurate.objectmapping.Setting;
 import ninja.leaping.configurate.objectmapping.serialize.ConfigSerializable;
 
+import java.util.List;
+
 @ConfigSerializable
 public class StorageCategory {
 
@@ -49,30 +52,122 @@ public class StorageCategory {
             + "   (MySQL, MariaDB)")
     private String mysqlDriver = "mysql";
 
+    @Setting(value = "shards", comment = ""
+            + "Additional databases records are spread over, each with its own connection pool\n"
+            + " - The database above is the first shard and takes records not assigned elsewhere\n"
+            + " - Lookups search every shard")
+    private List<ShardCategory> shards = Lists.newArrayList();
+
+    @Setting(value = "shard-by", comment = ""
+            + "How records are assigned to shards\n"
+            + "   (World, Time)\n"
+            + " - World uses the worlds listed by each shard\n"
+            + " - Time rotates through all shards every shard-time-bucket")
+    private String shardBy = "world";
+
+    @Setting(value = "shard-time-bucket", comment = "Time in hours records go to the same shard when sharding by time")
+    private int shardTimeBucket = 24;
+
     @Setting(value = "should-expire", comment = "Should records expire (be removed) after a specified amount of time?")
     private boolean shouldExpire = true;
 
     @Setting(value = "expire-records", comment = "The amount of time records are stored for")
     private String expireRecords = "4w";
 
+    @Setting(value = "builder-threads", comment = "Amount of threads turning captured events into records")
+    private int builderThreads = 2;
+
+    @Setting(value = "coalesce-events", comment = "Events whose repeated changes to the same block are merged into one record")
+    private List<String> coalesceEvents = Lists.newArrayList("decay", "grow");
+
+    @Setting(value = "coalesce-window", comment = ""
+            + "Time in milliseconds repeated changes to the same block are merged for\n"
+            + " - 0 disables merging")
+    private int coalesceWindow = 0;
+
+    @Setting(value = "extra-compression", comment = ""
+            + "Compression of extra record data, like container contents, in H2 and MySQL\n"
+            + "   (Deflate, None)")
+    private String extraCompression = "deflate";
+
+    @Setting(value = "extra-compression-threshold", comment = "Minimum size in bytes of extra record data before it's compressed")
+    private int extraCompressionThreshold = 256;
+
+    @Setting(value = "flush-batch-size", comment = "Amount of queued records which triggers a write")
+    private int flushBatchSize = 1000;
+
+    @Setting(value = "flush-batch-bytes", comment = "Approximate size in bytes of queued records which triggers a write")
+    private int flushBatchBytes = 4194304;
+
+    @Setting(value = "flush-max-delay", comment = "Maximum time in milliseconds a queued record waits before it's written")
+    private int flushMaxDelay = 1000;
+
     @Setting(value = "maximum-pool-size", comment = "Maximum size of the MySQL connection pool")
     private int maximumPoolSize = 10;
 
     @Setting(value = "minimum-idle", comment = "Minimum number of idle connections that the pool will try to maintain")
     private int minimumIdle = 2;
 
+    @Setting(value = "partition-period", comment = ""
+            + "Period MySQL records are partitioned by, expired partitions are dropped whole\n"
+            + "   (None, Day, Week)\n"
+            + " - Existing tables are rebuilt in the background when enabled, writes wait meanwhile\n"
+            + " - Records are kept until their whole period has expired")
+    private String partitionPeriod = "none";
+
     @Setting(value = "password", comment = "Credential for the database")
     private String password = "";
 
     @Setting(value = "purge-batch-limit", comment = "Amount of records to purge at a time")
     private int purgeBatchLimit = 100000;
 
+    @Setting(value = "query-fetch-size", comment = "Amount of records read from the database at a time by lookups and rollbacks")
+    private int queryFetchSize = 500;
+
+    @Setting(value = "queue-capacity", comment = "Maximum amount of records held in memory while waiting to be written")
+    private int queueCapacity = 100000;
+
+    @Setting(value = "queue-overflow-policy", comment = ""
+            + "What to do with new records when the recording queue is full\n"
+            + "   (Block, Drop, Spill)\n"
+            + " - Block waits for space, records from the server thread are spilled instead\n"
+            + " - Spill writes records to disk, they are saved once the queue has room again")
+    private String queueOverflowPolicy = "spill";
+
+    @Setting(value = "retry-attempts", comment = ""
+            + "How often a write is retried while the database is unavailable\n"
+            + " - Records which still can't be written go to the dead-letter file, see /pr replay-deadletter")
+    private int retryAttempts = 10;
+
+    @Setting(value = "retry-initial-delay", comment = "Time in milliseconds before the first retry, doubled for every further retry")
+    private int retryInitialDelay = 1000;
+
+    @Setting(value = "retry-max-delay", comment = "Maximum time in milliseconds between retries")
+    private int retryMaxDelay = 60000;
+
+    @Setting(value = "rows-per-statement", comment = "Amount of records inserted by a single MySQL statement")
+    private int rowsPerStatement = 100;
+
     @Setting(value = "table-prefix", comment = "The prefix of all SQL tables.")
     private String tablePrefix = "prism_";
 
     @Setting(value = "username", comment = "Credential for the database")
     private String username = "prism";
 
+    @Setting(value = "writer-threads", comment = ""
+            + "Amount of threads writing records in parallel\n"
+            + " - Records of the same chunk are always written by the same writer\n"
+            + " - Each writer uses its own connection, keep this below maximum-pool-size")
+    private int writerThreads = 2;
+
+    @Setting(value = "write-chunk-size", comment = "Maximum amount of records written in a single statement or transaction")
+    private int writeChunkSize = 500;
+
+    @Setting(value = "write-chunk-bytes", comment = ""
+            + "Approximate maximum size in bytes of records written in a single statement or transaction\n"
+            + " - Keep this well below the database's packet limit")
+    private int writeChunkBytes = 1048576;
+
     public String getAddress() {
         return address;
     }
@@ -105,6 +200,70 @@ public class StorageCategory {
         this.expireRecords = expireRecords;
     }
 
+    public int getBuilderThreads() {
+        return builderThreads;
+    }
+
+    public void setBuilderThreads(int builderThreads) {
+        this.builderThreads = builderThreads;
+    }
+
+    public List<String> getCoalesceEvents() {
+        return coalesceEvents;
+    }
+
+    public void setCoalesceEvents(List<String> coalesceEvents) {
+        this.coalesceEvents = coalesceEvents;
+    }
+
+    public int getCoalesceWindow() {
+        return coalesceWindow;
+    }
+
+    public void setCoalesceWindow(int coalesceWindow) {
+        this.coalesceWindow = coalesceWindow;
+    }
+
+    public String getExtraCompression() {
+        return extraCompression;
+    }
+
+    public void setExtraCompression(String extraCompression) {
+        this.extraCompression = extraCompression;
+    }
+
+    public int getExtraCompressionThreshold() {
+        return extraCompressionThreshold;
+    }
+
+    public void setExtraCompressionThreshold(int extraCompressionThreshold) {
+        this.extraCompressionThreshold = extraCompressionThreshold;
+    }
+
+    public int getFlushBatchSize() {
+        return flushBatchSize;
+    }
+
+    public void setFlushBatchSize(int flushBatchSize) {
+        this.flushBatchSize = flushBatchSize;
+    }
+
+    public int getFlushBatchBytes() {
+        return flushBatchBytes;
+    }
+
+    public void setFlushBatchBytes(int flushBatchBytes) {
+        this.flushBatchBytes = flushBatchBytes;
+    }
+
+    public int getFlushMaxDelay() {
+        return flushMaxDelay;
+    }
+
+    public void setFlushMaxDelay(int flushMaxDelay) {
+        this.flushMaxDelay = flushMaxDelay;
+    }
+
     public int getMaximumPoolSize() {
         return maximumPoolSize;
     }
@@ -121,6 +280,14 @@ public class StorageCategory {
         this.minimumIdle = minimumIdle;
     }
 
+    public String getPartitionPeriod() {
+        return partitionPeriod;
+    }
+
+    public void setPartitionPeriod(String partitionPeriod) {
+        this.partitionPeriod = partitionPeriod;
+    }
+
     public String getPassword() {
         return password;
     }
@@ -137,6 +304,62 @@ public class StorageCategory {
         this.purgeBatchLimit = purgeBatchLimit;
     }
 
+    public int getQueryFetchSize() {
+        return queryFetchSize;
+    }
+
+    public void setQueryFetchSize(int queryFetchSize) {
+        this.queryFetchSize = queryFetchSize;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public String getQueueOverflowPolicy() {
+        return queueOverflowPolicy;
+    }
+
+    public void setQueueOverflowPolicy(String queueOverflowPolicy) {
+        this.queueOverflowPolicy = queueOverflowPolicy;
+    }
+
+    public int getRetryAttempts() {
+        return retryAttempts;
+    }
+
+    public void setRetryAttempts(int retryAttempts) {
+        this.retryAttempts = retryAttempts;
+    }
+
+    public int getRetryInitialDelay() {
+        return retryInitialDelay;
+    }
+
+    public void setRetryInitialDelay(int retryInitialDelay) {
+        this.retryInitialDelay = retryInitialDelay;
+    }
+
+    public int getRetryMaxDelay() {
+        return retryMaxDelay;
+    }
+
+    public void setRetryMaxDelay(int retryMaxDelay) {
+        this.retryMaxDelay = retryMaxDelay;
+    }
+
+    public int getRowsPerStatement() {
+        return rowsPerStatement;
+    }
+
+    public void setRowsPerStatement(int rowsPerStatement) {
+        this.rowsPerStatement = rowsPerStatement;
+    }
+
     public String getTablePrefix() {
         return tablePrefix;
     }
@@ -153,6 +376,30 @@ public class StorageCategory {
         this.username = username;
     }
 
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    public void setWriterThreads(int writerThreads) {
+        this.writerThreads = writerThreads;
+    }
+
+    public int getWriteChunkSize() {
+        return writeChunkSize;
+    }
+
+    public void setWriteChunkSize(int writeChunkSize) {
+        this.writeChunkSize = writeChunkSize;
+    }
+
+    public int getWriteChunkBytes() {
+        return writeChunkBytes;
+    }
+
+    public void setWriteChunkBytes(int writeChunkBytes) {
+        this.writeChunkBytes = writeChunkBytes;
+    }
+
     public String getMysqlDriver() {
         return mysqlDriver;
     }
@@ -161,6 +408,30 @@ public class StorageCategory {
         this.mysqlDriver = mysqlDriver;
     }
 
+    public List<ShardCategory> getShards() {
+        return shards;
+    }
+
+    public void setShards(List<ShardCategory> shards) {
+        this.shards = shards;
+    }
+
+    public String getShardBy() {
+        return shardBy;
+    }
+
+    public void setShardBy(String shardBy) {
+        this.shardBy = shardBy;
+    }
+
+    public int getShardTimeBucket() {
+        return shardTimeBucket;
+    }
+
+    public void setShardTimeBucket(int shardTimeBucket) {
+        this.shardTimeBucket = shardTimeBucket;
+    }
+
     public boolean isShouldExpire() {
         return shouldExpire;
     }
@@ -0,0 +1,216 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.queues;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.helion3.prism.Prism;
+import com.helion3.prism.api.storage.PartialWriteException;
+import com.helion3.prism.util.DataQueries;
+import com.helion3.prism.util.DataUtil;
+import com.mongodb.MongoNotPrimaryException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import org.apache.commons.lang3.StringUtils;
+import org.spongepowered.api.data.DataContainer;
+
+/**
+ * Writes records to storage in bounded chunks.
+ *
+ * Each chunk is written and committed on its own. SQL storage writes a
+ * chunk in one transaction and Mongo skips records it already holds, so
+ * writing a chunk again after a failure doesn't duplicate it. Storage
+ * which writes only part of a chunk reports the rest with a
+ * {@link PartialWriteException}, and only those records are written again.
+ *
+ * A chunk which storage rejects is split in half until the offending
+ * records are isolated, so one bad record doesn't take the rest of the
+ * batch with it. Those records are moved to the {@link DeadLetterLog}.
+ * When storage can't be reached at all, writing stops and the remaining
+ * records are handed back to the caller.
+ */
+public class ChunkedWriter {
+
+    private final int chunkSize;
+    private final long chunkBytes;
+    private final DeadLetterLog deadLetter;
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * Create a writer with the given chunk limits.
+     *
+     * @param chunkSize Maximum records per chunk
+     * @param chunkBytes Approximate maximum bytes per chunk, 0 to disable
+     * @param deadLetter Where rejected records go
+     */
+    public ChunkedWriter(int chunkSize, long chunkBytes, DeadLetterLog deadLetter) {
+        this.chunkSize = Math.max(chunkSize, 1);
+        this.chunkBytes = chunkBytes;
+        this.deadLetter = deadLetter;
+    }
+
+    /**
+     * Writes all records, chunk by chunk.
+     *
+     * @param containers List of records
+     * @return Records which weren't written because storage is unavailable
+     */
+    public List<DataContainer> write(List<DataContainer> containers) {
+        int index = 0;
+        while (index < containers.size()) {
+            int end = nextChunkEnd(containers, index);
+
+            try {
+                writeChunk(containers.subList(index, end));
+            } catch (PartialWriteException ex) {
+                List<DataContainer> remaining = new ArrayList<>(ex.getUnwritten());
+                remaining.addAll(containers.subList(end, containers.size()));
+                Prism.getInstance().getLogger().warn("Storage is unavailable, {} records were not written: {}", remaining.size(), ex.getMessage());
+                return remaining;
+            }
+
+            index = end;
+        }
+
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns the total amount of records storage rejected.
+     *
+     * @return Failed record count
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    private int nextChunkEnd(List<DataContainer> containers, int start) {
+        int end = start;
+        long bytes = 0;
+
+        while (end < containers.size() && end - start < chunkSize) {
+            if (chunkBytes > 0) {
+                bytes += DataUtil.estimateSize(containers.get(end));
+                if (bytes > chunkBytes && end > start) {
+                    break;
+                }
+            }
+
+            end++;
+        }
+
+        return end;
+    }
+
+    /**
+     * Writes a single chunk, bisecting the records storage didn't write if
+     * it rejects them.
+     *
+     * @param chunk List of records
+     * @throws PartialWriteException With the records not yet written, if storage is unavailable
+     */
+    private void writeChunk(List<DataContainer> chunk) throws PartialWriteException {
+        List<DataContainer> unwritten = chunk;
+        Exception failure;
+        try {
+            Prism.getInstance().getStorageAdapter().records().write(chunk);
+            return;
+        } catch (PartialWriteException ex) {
+            unwritten = ex.getUnwritten();
+            failure = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+        } catch (Exception ex) {
+            failure = ex;
+        }
+
+        if (isUnavailable(failure)) {
+            throw new PartialWriteException(unwritten, failure);
+        }
+
+        if (unwritten.size() == 1) {
+            failedCount.incrementAndGet();
+            Prism.getInstance().getLogger().error("Failed to write {} record, moving it to the dead-letter file", unwritten.get(0).getString(DataQueries.EventName).orElse("unknown"), failure);
+
+            try {
+                deadLetter.write(unwritten);
+            } catch (IOException ex) {
+                Prism.getInstance().getLogger().error("Failed to write dead-letter file", ex);
+            }
+
+            return;
+        }
+
+        int middle = unwritten.size() / 2;
+        List<DataContainer> second = unwritten.subList(middle, unwritten.size());
+        try {
+            writeChunk(unwritten.subList(0, middle));
+        } catch (PartialWriteException ex) {
+            // The second half wasn't attempted yet
+            List<DataContainer> remaining = new ArrayList<>(ex.getUnwritten());
+            remaining.addAll(second);
+            throw new PartialWriteException(remaining, ex.getCause());
+        }
+
+        writeChunk(second);
+    }
+
+    /**
+     * Checks whether an exception means storage couldn't be reached,
+     * as opposed to storage rejecting the records.
+     *
+     * @param throwable Throwable
+     * @return True if storage is unavailable
+     */
+    public static boolean isUnavailable(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientException
+                    || cause instanceof SQLRecoverableException
+                    || cause instanceof SQLNonTransientConnectionException
+                    || cause instanceof IOException
+                    || cause instanceof MongoSocketException
+                    || cause instanceof MongoTimeoutException
+                    || cause instanceof MongoNotPrimaryException) {
+                return true;
+            }
+
+            // SQLState class 08 is a connection exception
+            if (cause instanceof SQLException && StringUtils.startsWith(((SQLException) cause).getSQLState(), "08")) {
+                return true;
+            }
+
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.queues;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import com.helion3.prism.Prism;
+import com.helion3.prism.util.DataCodec;
+import org.spongepowered.api.data.DataContainer;
+
+/**
+ * Append-only file holding records which couldn't be written to storage,
+ * either because storage rejected them or because it stayed unavailable
+ * for longer than the retry stage allows.
+ *
+ * Records are stored with {@link DataCodec}, each prefixed by its length.
+ * Nothing is replayed automatically, use /pr replay-deadletter once the
+ * cause has been dealt with.
+ */
+public class DeadLetterLog {
+
+    private static final int MAGIC = 0x50524446;
+    private static final byte VERSION = 1;
+    private static final int MAXIMUM_RECORD_SIZE = 64 * 1024 * 1024;
+
+    private final Path path;
+    private final Path replayPath;
+    private DataOutputStream output;
+    private long writtenCount;
+
+    /**
+     * Create a dead-letter log stored at the given path.
+     *
+     * @param path Path to the dead-letter file
+     */
+    public DeadLetterLog(Path path) {
+        this.path = path;
+        this.replayPath = path.resolveSibling(path.getFileName() + ".replay");
+    }
+
+    /**
+     * Appends records to the dead-letter file.
+     *
+     * @param containers List of records
+     * @throws IOException If the file couldn't be written
+     */
+    public synchronized void write(List<DataContainer> containers) throws IOException {
+        if (containers.isEmpty()) {
+            return;
+        }
+
+        if (output == null) {
+            Files.createDirectories(path.getParent());
+            boolean empty = !Files.exists(path) || Files.size(path) == 0;
+            output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+            if (empty) {
+                output.writeInt(MAGIC);
+                output.writeByte(VERSION);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream recordOutput = new DataOutputStream(bytes);
+        for (DataContainer container : containers) {
+            bytes.reset();
+            DataCodec.writeView(recordOutput, container);
+            output.writeInt(bytes.size());
+            bytes.writeTo(output);
+        }
+
+        output.flush();
+        writtenCount += containers.size();
+    }
+
+    /**
+     * Returns the total amount of records dead-lettered since startup.
+     *
+     * @return Dead-lettered record count
+     */
+    public synchronized long getWrittenCount() {
+        return writtenCount;
+    }
+
+    /**
+     * Moves the dead-letter file aside so it can be replayed while new
+     * records keep going to a fresh file. A replay file left behind by an
+     * interrupted replay is returned first.
+     *
+     * @return Path to the file to replay, or empty if there's nothing to replay
+     * @throws IOException If the file couldn't be moved
+     */
+    public synchronized Optional<Path> takeForReplay() throws IOException {
+        if (Files.exists(replayPath)) {
+            return Optional.of(replayPath);
+        }
+
+        close();
+
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+
+        Files.move(path, replayPath, StandardCopyOption.ATOMIC_MOVE);
+        return Optional.of(replayPath);
+    }
+
+    /**
+     * Reads a dead-letter file in batches. A truncated record at the end,
+     * usually a partial write after a crash, is logged and ignored.
+     *
+     * @param file Path to the file
+     * @param batchSize Maximum records per batch
+     * @param consumer Called for each batch
+     * @throws IOException If the file couldn't be read or isn't a dead-letter file
+     */
+    public static void read(Path file, int batchSize, BatchConsumer consumer) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readByte() != VERSION) {
+                throw new IOException(file.getFileName() + " is not a dead-letter file");
+            }
+
+            List<DataContainer> batch = new ArrayList<>(batchSize);
+            while (true) {
+                int length;
+                try {
+                    length = input.readInt();
+                } catch (EOFException ex) {
+                    break;
+                }
+
+                if (length < 0 || length > MAXIMUM_RECORD_SIZE) {
+                    throw new IOException(file.getFileName() + " is corrupt");
+                }
+
+                byte[] bytes = new byte[length];
+                try {
+                    input.readFully(bytes);
+                } catch (EOFException ex) {
+                    Prism.getInstance().getLogger().warn("Ignoring truncated record at the end of {}", file.getFileName());
+                    break;
+                }
+
+                try {
+                    batch.add(DataCodec.readView(new DataInputStream(new ByteArrayInputStream(bytes))));
+                } catch (IOException ex) {
+                    Prism.getInstance().getLogger().error("Skipping unreadable record in {}", file.getFileName(), ex);
+                }
+
+                if (batch.size() >= batchSize) {
+                    consumer.accept(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                consumer.accept(batch);
+            }
+        }
+    }
+
+    /**
+     * Removes a replay file once its records have been handled.
+     *
+     * @param file Path to the file
+     * @throws IOException If the file couldn't be deleted
+     */
+    public void delete(Path file) throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Closes the dead-letter file.
+     */
+    public synchronized void close() {
+        if (output == null) {
+            return;
+        }
+
+        try {
+            output.close();
+        } catch (IOException ex) {
+            Prism.getInstance().getLogger().error("Failed to close dead-letter file", ex);
+        }
+
+        output = null;
+    }
+
+    /**
+     * Receives records read from a dead-letter file.
+     */
+    @FunctionalInterface
+    public interface BatchConsumer {
+
+        /**
+         * @param batch List of records
+         * @throws IOException If handling the batch failed
+         */
+        void accept(List<DataContainer> batch) throws IOException;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.queues;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Describes what the {@link RecordingQueue} does with a record
+ * when it has reached its capacity.
+ */
+public enum OverflowPolicy {
+    BLOCK,
+    DROP,
+    SPILL;
+
+    /**
+     * Resolves a policy from its configured name.
+     *
+     * @param name String policy name
+     * @return OverflowPolicy, or SPILL if the name is unknown
+     */
+    public static OverflowPolicy from(String name) {
+        for (OverflowPolicy policy : values()) {
+            if (StringUtils.equalsIgnoreCase(policy.name(), name)) {
+                return policy;
+            }
+        }
+
+        return SPILL;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.queues;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import com.helion3.prism.util.DataQueries;
+import org.spongepowered.api.data.DataContainer;
+import org.spongepowered.api.data.DataView;
+
+/**
+ * Merges repeated block changes before they're written.
+ *
+ * Changes for the same world, coordinates, event and cause which arrive
+ * within the window are merged into one record. It keeps the first
+ * original block and the last replacement block, so rollbacks and
+ * restores end up with the same result, and stores how many changes it
+ * stands for as {@link DataQueries#Count}.
+ *
+ * Any other record for the same coordinates releases the pending merge
+ * first, so records for one block are always written in order.
+ */
+public class RecordCoalescer {
+
+    private final long window;
+    private final Set<String> events;
+    private final Map<String, Pending> pending = new LinkedHashMap<>();
+    private final Map<String, String> pendingByLocation = new HashMap<>();
+
+    /**
+     * Create a coalescer.
+     *
+     * @param window Time in milliseconds changes are merged for, 0 to disable
+     * @param events Event ids which may be merged
+     */
+    public RecordCoalescer(long window, Collection<String> events) {
+        this.window = window;
+        this.events = new HashSet<>(events);
+    }
+
+    /**
+     * Returns whether merging is enabled.
+     *
+     * @return True if enabled
+     */
+    public boolean isEnabled() {
+        return window > 0 && !events.isEmpty();
+    }
+
+    /**
+     * Merges records into the pending ones.
+     *
+     * @param containers List of records
+     * @return Records to write now, in order
+     */
+    public synchronized List<DataContainer> coalesce(List<DataContainer> containers) {
+        if (!isEnabled()) {
+            return containers;
+        }
+
+        long now = System.currentTimeMillis();
+        List<DataContainer> ready = new ArrayList<>(containers.size());
+
+        for (DataContainer container : containers) {
+            Optional<String> locationKey = locationKey(container);
+            if (!locationKey.isPresent()) {
+                ready.add(container);
+                continue;
+            }
+
+            String event = container.getString(DataQueries.EventName).orElse("");
+            String key = locationKey.get() + '|' + event + '|' + container.getString(DataQueries.Player)
+                    .orElseGet(() -> container.getString(DataQueries.Cause).orElse(""));
+
+            String pendingKey = pendingByLocation.get(locationKey.get());
+            if (pendingKey != null && !pendingKey.equals(key)) {
+                release(pendingKey, ready);
+            }
+
+            if (!events.contains(event)) {
+                ready.add(container);
+                continue;
+            }
+
+            Pending current = pending.get(key);
+            if (current == null) {
+                pending.put(key, new Pending(container, now + window));
+                pendingByLocation.put(locationKey.get(), key);
+            } else {
+                current.merge(container);
+            }
+        }
+
+        releaseExpired(now, ready);
+        return ready;
+    }
+
+    /**
+     * Releases merged records whose window has passed.
+     *
+     * @return Records to write now
+     */
+    public synchronized List<DataContainer> drainExpired() {
+        List<DataContainer> ready = new ArrayList<>();
+        releaseExpired(System.currentTimeMillis(), ready);
+        return ready;
+    }
+
+    /**
+     * Releases all merged records.
+     *
+     * @return Records to write now
+     */
+    public synchronized List<DataContainer> drainAll() {
+        List<DataContainer> ready = new ArrayList<>(pending.size());
+        for (Pending current : pending.values()) {
+            ready.add(current.getContainer());
+        }
+
+        pending.clear();
+        pendingByLocation.clear();
+        return ready;
+    }
+
+    private void releaseExpired(long now, List<DataContainer> ready) {
+        // Entries are in insertion order, so they expire in order too
+        Iterator<Map.Entry<String, Pending>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Pending> entry = iterator.next();
+            if (entry.getValue().expires > now) {
+                break;
+            }
+
+            iterator.remove();
+            locationKey(entry.getValue().container).ifPresent(pendingByLocation::remove);
+            ready.add(entry.getValue().getContainer());
+        }
+    }
+
+    private void release(String key, List<DataContainer> ready) {
+        Pending current = pending.remove(key);
+        if (current != null) {
+            locationKey(current.container).ifPresent(pendingByLocation::remove);
+            ready.add(current.getContainer());
+        }
+    }
+
+    private static Optional<String> locationKey(DataContainer container) {
+        Optional<DataView> location = container.getView(DataQueries.Location);
+        if (!location.isPresent()) {
+            return Optional.empty();
+        }
+
+        Optional<String> world = location.get().get(DataQueries.WorldUuid).map(Object::toString);
+        Optional<Integer> x = location.get().getInt(DataQueries.X);
+        Optional<Integer> y = location.get().getInt(DataQueries.Y);
+        Optional<Integer> z = location.get().getInt(DataQueries.Z);
+        if (!world.isPresent() || !x.isPresent() || !y.isPresent() || !z.isPresent()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(world.get() + '|' + x.get() + '|' + y.get() + '|' + z.get());
+    }
+
+    /**
+     * A merged record waiting for its window to pass.
+     */
+    private static final class Pending {
+        private final DataContainer container;
+        private final long expires;
+        private int count = 1;
+
+        private Pending(DataContainer container, long expires) {
+            this.container = container;
+            this.expires = expires;
+        }
+
+        private void merge(DataContainer next) {
+            Optional<DataView> replacement = next.getView(DataQueries.ReplacementBlock);
+            if (replacement.isPresent()) {
+                container.set(DataQueries.ReplacementBlock, replacement.get());
+            } else {
+                container.remove(DataQueries.ReplacementBlock);
+            }
+
+            count++;
+        }
+
+        private DataContainer getContainer() {
+            if (count > 1) {
+                container.set(DataQueries.Count, count);
+            }
+
+            return container;
+        }
+    }
+}
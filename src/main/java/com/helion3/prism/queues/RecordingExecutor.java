@@ -0,0 +1,102 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.queues;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.helion3.prism.Prism;
+
+/**
+ * Worker pool which turns captured events into records.
+ *
+ * Listeners only capture immutable snapshots on the server thread and hand
+ * the rest of the work, serializing the snapshots, filtering and queueing,
+ * to this pool. When the pool falls behind, or isn't running, the work is
+ * done by the calling thread instead so no record is lost.
+ */
+public class RecordingExecutor {
+
+    private static volatile ThreadPoolExecutor executor;
+
+    private RecordingExecutor() {}
+
+    /**
+     * Starts the worker threads.
+     */
+    public static synchronized void start() {
+        int threads = Math.max(Prism.getInstance().getConfig().getStorageCategory().getBuilderThreads(), 1);
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(RecordingQueue.getCapacity()),
+                new ThreadFactoryBuilder().setNameFormat("PrismRecordBuilder-%d").setDaemon(true).build(),
+                (task, pool) -> task.run());
+    }
+
+    /**
+     * Stops the worker threads once all pending work is done.
+     */
+    public static synchronized void stop() {
+        ThreadPoolExecutor current = executor;
+        if (current == null) {
+            return;
+        }
+
+        current.shutdown();
+
+        try {
+            if (!current.awaitTermination(30, TimeUnit.SECONDS)) {
+                Prism.getInstance().getLogger().warn("Timed out waiting for record builders to finish");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        executor = null;
+    }
+
+    /**
+     * Runs a task on the worker pool.
+     *
+     * @param task Task building and saving a record
+     */
+    public static void execute(Runnable task) {
+        Runnable guardedTask = () -> {
+            try {
+                task.run();
+            } catch (Exception ex) {
+                Prism.getInstance().getLogger().error("Failed to build record", ex);
+            }
+        };
+
+        ThreadPoolExecutor current = executor;
+        if (current == null || current.isShutdown()) {
+            guardedTask.run();
+            return;
+        }
+
+        current.execute(guardedTask);
+    }
+}
@@ -23,20 +23,81 @@
  */
 package com.helion3.prism.queues;
 
+import java.io.IOException;
+import java.util.Optional;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import com.helion3.prism.Prism;
 import com.helion3.prism.api.records.PrismRecord;
+import com.helion3.prism.util.DataQueries;
+import com.helion3.prism.util.SpatialKey;
+import org.spongepowered.api.Sponge;
 import org.spongepowered.api.data.DataContainer;
+import org.spongepowered.api.data.DataView;
 
+/**
+ * Holds records waiting to be written, split into one partition per writer.
+ *
+ * Records are assigned to a partition by their world and chunk, so changes
+ * to the same location are always written by the same writer in the order
+ * they were queued. Records without a location are spread evenly.
+ */
 public class RecordingQueue {
 
-    private static final LinkedBlockingQueue<PrismRecord> queue = new LinkedBlockingQueue<>();
+    private static final int capacity = Math.max(Prism.getInstance().getConfig().getStorageCategory().getQueueCapacity(), 1);
+    private static final int partitions = Math.max(Prism.getInstance().getConfig().getStorageCategory().getWriterThreads(), 1);
+    private static final OverflowPolicy overflowPolicy = OverflowPolicy.from(Prism.getInstance().getConfig().getStorageCategory().getQueueOverflowPolicy());
+    private static final LinkedBlockingQueue<PrismRecord>[] queues = createQueues();
+    private static final AtomicInteger nextPartition = new AtomicInteger();
+    private static final RecordingSpill spill = new RecordingSpill(Prism.getInstance().getPath().getParent().resolve("spill"));
+    private static final AtomicLong droppedCount = new AtomicLong();
 
     private RecordingQueue(){}
 
+    @SuppressWarnings("unchecked")
+    private static LinkedBlockingQueue<PrismRecord>[] createQueues() {
+        LinkedBlockingQueue<PrismRecord>[] queues = new LinkedBlockingQueue[partitions];
+        for (int index = 0; index < partitions; index++) {
+            queues[index] = new LinkedBlockingQueue<>((capacity + partitions - 1) / partitions);
+        }
+
+        return queues;
+    }
+
+    /**
+     * Returns the partition a record belongs to.
+     *
+     * @param container Record
+     * @return Partition index
+     */
+    private static int partition(DataContainer container) {
+        if (partitions == 1) {
+            return 0;
+        }
+
+        Optional<DataView> location = container.getView(DataQueries.Location);
+        Optional<String> world = location.flatMap(view -> view.getString(DataQueries.WorldUuid));
+        Optional<Integer> x = location.flatMap(view -> view.getInt(DataQueries.X));
+        Optional<Integer> z = location.flatMap(view -> view.getInt(DataQueries.Z));
+        if (!world.isPresent() || !x.isPresent() || !z.isPresent()) {
+            return Math.floorMod(nextPartition.getAndIncrement(), partitions);
+        }
+
+        int hash = 31 * world.get().hashCode() + Long.hashCode(SpatialKey.of(x.get(), z.get()));
+        return Math.floorMod(hash ^ (hash >>> 16), partitions);
+    }
+
     /**
      * Adds a new Event to the recording queue.
      *
+     * If the queue is full the record is handled by the configured
+     * {@link OverflowPolicy}. The server thread is never blocked,
+     * records it can't queue are handed to the spill thread instead and
+     * dropped if the spill thread falls behind. Other threads write
+     * their records to the spill themselves.
+     *
      * @param record Event to be queued for database write
      */
     public static void add(final PrismRecord record) {
@@ -48,15 +109,100 @@ public class RecordingQueue {
             throw new IllegalArgumentException("PrismRecord with null container given to Prism recording queue.");
         }
 
-        queue.add(record);
+        LinkedBlockingQueue<PrismRecord> queue = queues[partition(record.getDataContainer())];
+        if (queue.offer(record)) {
+            return;
+        }
+
+        if (overflowPolicy == OverflowPolicy.DROP) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+
+        boolean mainThread = Sponge.getServer().isMainThread();
+        if (overflowPolicy == OverflowPolicy.BLOCK && !mainThread) {
+            try {
+                queue.put(record);
+                return;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (mainThread) {
+            // Keep disk writes off the server thread
+            if (!spill.offer(record.getDataContainer())) {
+                droppedCount.incrementAndGet();
+            }
+
+            return;
+        }
+
+        try {
+            spill.write(record.getDataContainer());
+        } catch (IOException ex) {
+            droppedCount.incrementAndGet();
+            Prism.getInstance().getLogger().error("Failed to spill {} record", record.getEvent(), ex);
+        }
+    }
+
+    /**
+     * Returns the unsaved events of one partition.
+     *
+     * @param partition Partition index
+     * @return Current unsaved {@link PrismRecord} queue
+     */
+    public static LinkedBlockingQueue<PrismRecord> getQueue(int partition) {
+        return queues[partition];
+    }
+
+    /**
+     * Returns the amount of partitions, one for each writer.
+     *
+     * @return Partition count
+     */
+    public static int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Returns the amount of unsaved events in all partitions.
+     *
+     * @return Queued record count
+     */
+    public static int size() {
+        int size = 0;
+        for (LinkedBlockingQueue<PrismRecord> queue : queues) {
+            size += queue.size();
+        }
+
+        return size;
+    }
+
+    /**
+     * Returns the maximum amount of records held in memory.
+     *
+     * @return Queue capacity
+     */
+    public static int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the records which overflowed to disk.
+     *
+     * @return {@link RecordingSpill}
+     */
+    public static RecordingSpill getSpill() {
+        return spill;
     }
 
     /**
-     * Returns all unsaved events in the queue.
+     * Returns the total amount of records dropped since startup.
      *
-     * @return Current unsaved {@link DataContainer} queue
+     * @return Dropped record count
      */
-    public static LinkedBlockingQueue<PrismRecord> getQueue() {
-        return queue;
+    public static long getDroppedCount() {
+        return droppedCount.get();
     }
-}
\ No newline at end of file
+}
@@ -23,11 +23,24 @@
  */
 package com.helion3.prism.queues;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.helion3.prism.api.filters.FilterList;
 import com.helion3.prism.api.records.PrismRecord;
 import com.helion3.prism.api.records.PrismRecordPreSaveEvent;
+import com.helion3.prism.configuration.category.StorageCategory;
+import com.helion3.prism.util.DataQueries;
+import com.helion3.prism.util.DataUtil;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.data.DataContainer;
 
@@ -36,42 +49,397 @@ import org.spongepowered.api.event.cause.Cause;
 import org.spongepowered.api.event.cause.EventContext;
 import org.spongepowered.api.event.cause.EventContextKeys;
 import org.spongepowered.api.plugin.PluginContainer;
+import org.spongepowered.api.scheduler.Task;
 
-public class RecordingQueueManager implements Runnable {
+/**
+ * Moves records from the {@link RecordingQueue} to storage.
+ *
+ * Each writer thread pulls records into its own batch and writes it once
+ * the batch reaches the configured size, byte size or age, whichever comes
+ * first. Each writer owns one partition of the {@link RecordingQueue}, and
+ * records of the same chunk always share a partition, so changes to one
+ * location are written in the order they were queued.
+ *
+ * Batches which can't be written because storage is unavailable are retried
+ * with exponential backoff. Once the retries are exhausted the records go to
+ * the {@link DeadLetterLog}.
+ *
+ * When enabled, repeated changes to the same block are merged by the
+ * {@link RecordCoalescer} of their partition before they're written.
+ */
+public class RecordingQueueManager {
+
+    private int batchSize;
+    private long batchBytes;
+    private long maxDelay;
+    private int retryAttempts;
+    private long retryInitialDelay;
+    private long retryMaxDelay;
+    private long replayDelay;
+    private long nextReplay;
+    private DeadLetterLog deadLetter;
+    private ChunkedWriter chunkedWriter;
+    private RecordCoalescer[] coalescers;
+    private final AtomicBoolean replayingDeadLetter = new AtomicBoolean();
+    private ExecutorService writers;
+    private volatile boolean running;
+    private long reportedDroppedCount;
+    private long reportedSpilledCount;
+    private long reportedRejectedCount;
+
+    /**
+     * Starts the writer threads and the maintenance task.
+     */
+    public void start() {
+        StorageCategory storage = Prism.getInstance().getConfig().getStorageCategory();
+        batchSize = Math.max(storage.getFlushBatchSize(), 1);
+        batchBytes = storage.getFlushBatchBytes();
+        maxDelay = Math.max(storage.getFlushMaxDelay(), 1);
+        retryAttempts = Math.max(storage.getRetryAttempts(), 0);
+        retryInitialDelay = Math.max(storage.getRetryInitialDelay(), 1);
+        retryMaxDelay = Math.max(storage.getRetryMaxDelay(), retryInitialDelay);
+        replayDelay = retryInitialDelay;
+        deadLetter = new DeadLetterLog(Prism.getInstance().getPath().getParent().resolve("deadletter.bin"));
+        chunkedWriter = new ChunkedWriter(storage.getWriteChunkSize(), storage.getWriteChunkBytes(), deadLetter);
+        int writerThreads = RecordingQueue.getPartitions();
 
-    @Override
-    public synchronized void run() {
-        List<DataContainer> eventsSaveBatch = new ArrayList<>();
+        // One per partition, so held records are written by the writer of their location
+        coalescers = new RecordCoalescer[writerThreads];
+        for (int index = 0; index < writerThreads; index++) {
+            coalescers[index] = new RecordCoalescer(Math.max(storage.getCoalesceWindow(), 0), storage.getCoalesceEvents());
+        }
+
+        if (writerThreads > storage.getMaximumPoolSize()) {
+            Prism.getInstance().getLogger().warn("{} writer threads configured but the connection pool only holds {}",
+                    writerThreads, storage.getMaximumPoolSize());
+        }
 
-        // Assume we're iterating everything in the queue
-        while (!RecordingQueue.getQueue().isEmpty()) {
-            // Poll the next event, append to list
-            PrismRecord record = RecordingQueue.getQueue().poll();
+        running = true;
+        writers = Executors.newFixedThreadPool(writerThreads, new ThreadFactoryBuilder().setNameFormat("PrismRecordingWriter-%d").build());
+        for (int index = 0; index < writerThreads; index++) {
+            int partition = index;
+            writers.execute(() -> write(partition));
+        }
+
+        Task.builder()
+                .async()
+                .name("PrismRecordingQueueManager")
+                .interval(1, TimeUnit.SECONDS)
+                .execute(this::maintain)
+                .submit(Prism.getInstance().getPluginContainer());
+    }
 
-            if (record != null) {
-                // Prepare PrismRecord for sending to a PrismRecordEvent
-                PluginContainer plugin = Prism.getInstance().getPluginContainer();
-                EventContext eventContext = EventContext.builder().add(EventContextKeys.PLUGIN, plugin).build();
+    /**
+     * Stops the writer threads and writes anything left in the queue.
+     * Blocks until all pending records have been handed to storage.
+     */
+    public void stop() {
+        running = false;
 
-                PrismRecordPreSaveEvent preSaveEvent = new PrismRecordPreSaveEvent(record,
-                    Cause.of(eventContext, plugin));
+        if (writers != null) {
+            writers.shutdown();
 
-                // Tell Sponge that this PrismRecordEvent has occurred
-                Sponge.getEventManager().post(preSaveEvent);
+            try {
+                if (!writers.awaitTermination(30, TimeUnit.SECONDS)) {
+                    Prism.getInstance().getLogger().warn("Timed out waiting for recording writers to finish");
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
 
-                if (!preSaveEvent.isCancelled()) {
-                    eventsSaveBatch.add(record.getDataContainer());
+        if (coalescers != null) {
+            for (int partition = 0; partition < coalescers.length; partition++) {
+                List<PrismRecord> batch = new ArrayList<>();
+                RecordingQueue.getQueue(partition).drainTo(batch);
+                if (!batch.isEmpty()) {
+                    flush(batch, coalescers[partition]);
                 }
+
+                writeContainers(coalescers[partition].drainAll());
+            }
+        }
+
+        report();
+
+        if (deadLetter != null) {
+            deadLetter.close();
+        }
+    }
+
+    /**
+     * Writer loop, collects records until a flush threshold is hit.
+     *
+     * @param partition Partition of the {@link RecordingQueue} to write
+     */
+    private void write(int partition) {
+        LinkedBlockingQueue<PrismRecord> queue = RecordingQueue.getQueue(partition);
+        RecordCoalescer coalescer = coalescers[partition];
+        List<PrismRecord> batch = new ArrayList<>();
+        long bytes = 0;
+        long deadline = 0;
+
+        while (running) {
+            try {
+                long timeout = batch.isEmpty() ? maxDelay : deadline - System.currentTimeMillis();
+                PrismRecord record = queue.poll(Math.max(timeout, 0), TimeUnit.MILLISECONDS);
+                if (record != null) {
+                    if (batch.isEmpty()) {
+                        deadline = System.currentTimeMillis() + maxDelay;
+                    }
+
+                    int index = batch.size();
+                    batch.add(record);
+                    queue.drainTo(batch, batchSize - batch.size());
+
+                    if (batchBytes > 0) {
+                        for (; index < batch.size(); index++) {
+                            bytes += DataUtil.estimateSize(batch.get(index).getDataContainer());
+                        }
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            if (batch.isEmpty() && coalescer.isEnabled()) {
+                writeContainers(coalescer.drainExpired());
+            }
+
+            if (!batch.isEmpty() && (batch.size() >= batchSize
+                    || (batchBytes > 0 && bytes >= batchBytes)
+                    || System.currentTimeMillis() >= deadline)) {
+                flush(batch, coalescer);
+                batch = new ArrayList<>();
+                bytes = 0;
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            flush(batch, coalescer);
+        }
+    }
+
+    /**
+     * Fires the pre-save event for each record and writes the remainder.
+     *
+     * @param batch List of records
+     * @param coalescer RecordCoalescer of the batch's partition
+     */
+    private void flush(List<PrismRecord> batch, RecordCoalescer coalescer) {
+        List<DataContainer> eventsSaveBatch = new ArrayList<>(batch.size());
+
+        // Prepare PrismRecord for sending to a PrismRecordEvent
+        PluginContainer plugin = Prism.getInstance().getPluginContainer();
+        EventContext eventContext = EventContext.builder().add(EventContextKeys.PLUGIN, plugin).build();
+
+        for (PrismRecord record : batch) {
+            PrismRecordPreSaveEvent preSaveEvent = new PrismRecordPreSaveEvent(record,
+                Cause.of(eventContext, plugin));
+
+            // Tell Sponge that this PrismRecordEvent has occurred
+            Sponge.getEventManager().post(preSaveEvent);
+
+            if (!preSaveEvent.isCancelled()) {
+                eventsSaveBatch.add(record.getDataContainer());
+            }
+        }
+
+        writeContainers(coalescer.coalesce(eventsSaveBatch));
+    }
+
+    /**
+     * Writes records to storage, retrying while storage is unavailable.
+     *
+     * @param containers List of records
+     */
+    private void writeContainers(List<DataContainer> containers) {
+        if (containers.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<DataContainer> remaining = retry(chunkedWriter.write(containers));
+        if (!remaining.isEmpty()) {
+            Prism.getInstance().getLogger().error("Storage is still unavailable, moving {} records to the dead-letter file", remaining.size());
+            deadLetter(remaining);
+            return;
+        }
+
+        long elapsed = Math.max(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), 1);
+        Prism.getInstance().getLogger().debug("Wrote {} records in {} ms ({} records/s)",
+                containers.size(), elapsed, containers.size() * 1000L / elapsed);
+    }
+
+    /**
+     * Retries records which weren't written because storage is unavailable,
+     * doubling the delay after every attempt.
+     *
+     * @param remaining List of records
+     * @return Records which still couldn't be written
+     */
+    private List<DataContainer> retry(List<DataContainer> remaining) {
+        long delay = retryInitialDelay;
+        for (int attempt = 1; !remaining.isEmpty() && attempt <= retryAttempts && running; attempt++) {
+            Prism.getInstance().getLogger().warn("Retrying {} records in {} ms (attempt {} of {})",
+                    remaining.size(), delay, attempt, retryAttempts);
+
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
             }
+
+            delay = Math.min(delay * 2, retryMaxDelay);
+            remaining = chunkedWriter.write(remaining);
+        }
+
+        return remaining;
+    }
+
+    /**
+     * Periodic reporting and replay of spilled records.
+     */
+    private synchronized void maintain() {
+        report();
+        replaySpill();
+    }
+
+    /**
+     * Warns about records which didn't fit into the queue since the last run.
+     */
+    private void report() {
+        long droppedCount = RecordingQueue.getDroppedCount();
+        if (droppedCount > reportedDroppedCount) {
+            Prism.getInstance().getLogger().warn("Recording queue is full, dropped {} records ({} total)",
+                    droppedCount - reportedDroppedCount, droppedCount);
+            reportedDroppedCount = droppedCount;
+        }
+
+        long spilledCount = RecordingQueue.getSpill().getSpilledCount();
+        if (spilledCount > reportedSpilledCount) {
+            Prism.getInstance().getLogger().warn("Spilled {} records to disk ({} total)",
+                    spilledCount - reportedSpilledCount, spilledCount);
+            reportedSpilledCount = spilledCount;
+        }
+
+        FilterList filterList = Prism.getInstance().getFilterList();
+        long rejectedCount = filterList.getRejectedSourceCount() + filterList.getRejectedBlockCount();
+        if (rejectedCount > reportedRejectedCount) {
+            Prism.getInstance().getLogger().debug("Filtered out {} records ({} by source, {} by block in total)",
+                    rejectedCount - reportedRejectedCount, filterList.getRejectedSourceCount(), filterList.getRejectedBlockCount());
+            reportedRejectedCount = rejectedCount;
+        }
+
+        RecordingQueue.getSpill().flush();
+    }
+
+    /**
+     * Writes one spilled segment to storage once the queue has room again.
+     * The segment is only removed after it has been written successfully.
+     */
+    private void replaySpill() {
+        RecordingSpill spill = RecordingQueue.getSpill();
+        if (!spill.hasSegments() || RecordingQueue.size() > RecordingQueue.getCapacity() / 4
+                || System.currentTimeMillis() < nextReplay) {
+            return;
         }
 
-        if (eventsSaveBatch.size() > 0) {
+        try {
+            Optional<Path> segment = spill.nextSegment();
+            if (!segment.isPresent()) {
+                return;
+            }
+
+            List<DataContainer> containers = spill.read(segment.get());
+            List<DataContainer> remaining = chunkedWriter.write(containers);
+            if (!remaining.isEmpty() && remaining.size() == containers.size()) {
+                // Nothing was written, leave the segment and back off
+                nextReplay = System.currentTimeMillis() + replayDelay;
+                replayDelay = Math.min(replayDelay * 2, retryMaxDelay);
+                return;
+            }
+
+            replayDelay = retryInitialDelay;
+
+            spill(remaining);
+            spill.delete(segment.get());
+            Prism.getInstance().getLogger().info("Saved {} spilled records", containers.size() - remaining.size());
+        } catch (Exception ex) {
+            Prism.getInstance().getLogger().error("Failed to save spilled records, retrying later", ex);
+        }
+    }
+
+    /**
+     * Spills records which couldn't be written so they can be retried later.
+     *
+     * @param containers List of records
+     */
+    private void spill(List<DataContainer> containers) {
+        for (DataContainer container : containers) {
             try {
-                Prism.getInstance().getStorageAdapter().records().write(eventsSaveBatch);
-            } catch (Exception e) {
-                // @todo handle failures
-                e.printStackTrace();
+                RecordingQueue.getSpill().write(container);
+            } catch (IOException ex) {
+                Prism.getInstance().getLogger().error("Failed to spill {} record", container.getString(DataQueries.EventName).orElse("unknown"), ex);
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Moves records to the dead-letter file.
+     *
+     * @param containers List of records
+     */
+    private void deadLetter(List<DataContainer> containers) {
+        try {
+            deadLetter.write(containers);
+        } catch (IOException ex) {
+            Prism.getInstance().getLogger().error("Failed to write {} records to the dead-letter file", containers.size(), ex);
+        }
+    }
+
+    /**
+     * Writes the records in the dead-letter file to storage. Records which
+     * still can't be written are moved back to the dead-letter file.
+     *
+     * @return Amount of records handed back to storage
+     * @throws IOException If the dead-letter file couldn't be read
+     * @throws IllegalStateException If a replay is already running
+     */
+    public long replayDeadLetter() throws IOException {
+        if (!replayingDeadLetter.compareAndSet(false, true)) {
+            throw new IllegalStateException("The dead-letter file is already being replayed.");
+        }
+
+        try {
+            Optional<Path> file = deadLetter.takeForReplay();
+            if (!file.isPresent()) {
+                return 0;
+            }
+
+            long[] replayed = new long[1];
+            long[] returned = new long[1];
+            DeadLetterLog.read(file.get(), batchSize, batch -> {
+                // Once storage is unavailable the rest goes straight back
+                List<DataContainer> remaining = returned[0] > 0 ? batch : chunkedWriter.write(batch);
+                replayed[0] += batch.size() - remaining.size();
+
+                if (!remaining.isEmpty()) {
+                    returned[0] += remaining.size();
+                    deadLetter.write(remaining);
+                }
+            });
+
+            if (returned[0] > 0) {
+                Prism.getInstance().getLogger().warn("Storage is unavailable, moved {} records back to the dead-letter file", returned[0]);
+            }
+
+            deadLetter.delete(file.get());
+            return replayed[0];
+        } finally {
+            replayingDeadLetter.set(false);
+        }
+    }
+}
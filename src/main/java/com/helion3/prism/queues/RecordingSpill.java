@@ -0,0 +1,298 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.queues;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.helion3.prism.Prism;
+import com.helion3.prism.util.DataQueries;
+import com.helion3.prism.util.DataUtil;
+import org.spongepowered.api.data.DataContainer;
+
+/**
+ * Append-only segment files holding records which didn't fit
+ * into the {@link RecordingQueue}.
+ *
+ * Each segment stores one JSON document per line. Segments are
+ * replayed oldest first and removed once they've been written
+ * to storage, so anything left over from a previous run is
+ * picked up on the next start.
+ *
+ * The server thread never writes segments itself, it hands records to a
+ * small buffer which a dedicated spill thread writes to disk.
+ */
+public class RecordingSpill {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".json";
+    private static final int SEGMENT_SIZE = 10000;
+    private static final int PENDING_CAPACITY = 4096;
+
+    private final Path directory;
+    private final BlockingQueue<DataContainer> pending = new ArrayBlockingQueue<>(PENDING_CAPACITY);
+    private final Thread spillThread;
+    private volatile boolean running = true;
+    private final Deque<Path> segments = new ArrayDeque<>();
+    private BufferedWriter writer;
+    private Path activeSegment;
+    private int activeCount;
+    private long sequence;
+    private long spilledCount;
+
+    /**
+     * Create a spill stored in the given directory.
+     *
+     * @param directory Path to the segment directory
+     */
+    public RecordingSpill(Path directory) {
+        this.directory = directory;
+
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> stream = Files.list(directory)) {
+                segments.addAll(stream
+                        .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                        .sorted()
+                        .collect(Collectors.toList()));
+            } catch (IOException ex) {
+                Prism.getInstance().getLogger().error("Failed to read spilled records from {}", directory, ex);
+            }
+        }
+
+        spillThread = new ThreadFactoryBuilder().setNameFormat("PrismRecordingSpill").setDaemon(true).build().newThread(this::writePending);
+        spillThread.start();
+    }
+
+    /**
+     * Hands a record to the spill thread without waiting on disk.
+     *
+     * @param container DataContainer to spill
+     * @return False if the spill thread is behind and the record wasn't taken
+     */
+    public boolean offer(DataContainer container) {
+        return running && pending.offer(container);
+    }
+
+    /**
+     * Spill thread loop, writes handed over records until the spill is closed.
+     */
+    private void writePending() {
+        while (running || !pending.isEmpty()) {
+            DataContainer container;
+            try {
+                container = pending.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                break;
+            }
+
+            if (container != null) {
+                writeOrLog(container);
+            }
+        }
+    }
+
+    private void writeOrLog(DataContainer container) {
+        try {
+            write(container);
+        } catch (IOException ex) {
+            Prism.getInstance().getLogger().error("Failed to spill {} record", container.getString(DataQueries.EventName).orElse("unknown"), ex);
+        }
+    }
+
+    /**
+     * Appends a record to the active segment.
+     *
+     * @param container DataContainer to spill
+     * @throws IOException If the segment couldn't be written
+     */
+    public synchronized void write(DataContainer container) throws IOException {
+        if (writer == null) {
+            Files.createDirectories(directory);
+            activeSegment = directory.resolve(String.format("%s%013d-%06d%s", SEGMENT_PREFIX, System.currentTimeMillis(), sequence++, SEGMENT_SUFFIX));
+            writer = Files.newBufferedWriter(activeSegment, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            segments.addLast(activeSegment);
+            activeCount = 0;
+        }
+
+        JsonObject json = DataUtil.jsonFromDataView(container);
+
+        // Dates aren't handled by the json conversion
+        container.get(DataQueries.Created).filter(Date.class::isInstance).ifPresent(created ->
+                json.addProperty(DataQueries.Created.toString(), ((Date) created).getTime()));
+
+        writer.write(json.toString());
+        writer.newLine();
+        spilledCount++;
+
+        if (++activeCount >= SEGMENT_SIZE) {
+            closeActiveSegment();
+        }
+    }
+
+    /**
+     * Returns whether any records are waiting on disk.
+     *
+     * @return True if there are segments to replay
+     */
+    public synchronized boolean hasSegments() {
+        return !segments.isEmpty();
+    }
+
+    /**
+     * Returns the total amount of records spilled since startup.
+     *
+     * @return Spilled record count
+     */
+    public synchronized long getSpilledCount() {
+        return spilledCount;
+    }
+
+    /**
+     * Returns the oldest segment, closing it first if it's still
+     * being appended to.
+     *
+     * @return The oldest segment, or empty if there's nothing to replay
+     * @throws IOException If the active segment couldn't be closed
+     */
+    public synchronized Optional<Path> nextSegment() throws IOException {
+        Path segment = segments.peekFirst();
+        if (segment != null && segment.equals(activeSegment)) {
+            closeActiveSegment();
+        }
+
+        return Optional.ofNullable(segment);
+    }
+
+    /**
+     * Reads all records from a segment. Lines which can't be parsed,
+     * usually a partial write after a crash, are logged and skipped.
+     *
+     * @param segment Path to the segment
+     * @return List of records in the order they were spilled
+     * @throws IOException If the segment couldn't be read
+     */
+    public List<DataContainer> read(Path segment) throws IOException {
+        List<DataContainer> containers = new ArrayList<>();
+        JsonParser parser = new JsonParser();
+
+        for (String line : Files.readAllLines(segment, StandardCharsets.UTF_8)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            try {
+                DataContainer container = DataUtil.dataViewFromJson(parser.parse(line).getAsJsonObject()).getContainer();
+                container.getLong(DataQueries.Created).ifPresent(created -> container.set(DataQueries.Created, new Date(created)));
+                containers.add(container);
+            } catch (Exception ex) {
+                Prism.getInstance().getLogger().error("Skipping unreadable record in {}", segment.getFileName(), ex);
+            }
+        }
+
+        return containers;
+    }
+
+    /**
+     * Removes a segment once its records have been written to storage.
+     *
+     * @param segment Path to the segment
+     * @throws IOException If the segment couldn't be deleted
+     */
+    public synchronized void delete(Path segment) throws IOException {
+        segments.remove(segment);
+        Files.deleteIfExists(segment);
+    }
+
+    /**
+     * Flushes buffered records to disk.
+     */
+    public synchronized void flush() {
+        if (writer == null) {
+            return;
+        }
+
+        try {
+            writer.flush();
+        } catch (IOException ex) {
+            Prism.getInstance().getLogger().error("Failed to flush spilled records", ex);
+        }
+    }
+
+    /**
+     * Writes the records still handed to the spill thread and closes the
+     * active segment, it'll be replayed on the next start.
+     */
+    public void close() {
+        running = false;
+
+        try {
+            spillThread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<DataContainer> remaining = new ArrayList<>();
+        pending.drainTo(remaining);
+        remaining.forEach(this::writeOrLog);
+
+        closeSegment();
+    }
+
+    private synchronized void closeSegment() {
+        try {
+            closeActiveSegment();
+        } catch (IOException ex) {
+            Prism.getInstance().getLogger().error("Failed to close spilled records", ex);
+        }
+    }
+
+    private void closeActiveSegment() throws IOException {
+        if (writer != null) {
+            try {
+                writer.close();
+            } finally {
+                writer = null;
+                activeSegment = null;
+            }
+        }
+    }
+}
@@ -26,8 +26,10 @@ package com.helion3.prism.storage.h2;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -39,7 +41,6 @@ import org.spongepowered.api.data.DataContainer;
 import org.spongepowered.api.data.DataQuery;
 import org.spongepowered.api.data.DataView;
 
-import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.helion3.prism.Prism;
 import com.helion3.prism.api.query.Query;
@@ -50,23 +51,70 @@ import com.helion3.prism.api.storage.StorageDeleteResult;
 import com.helion3.prism.api.storage.StorageWriteResult;
 import com.helion3.prism.util.DataQueries;
 import com.helion3.prism.util.DataUtil;
+import com.helion3.prism.util.PayloadCodec;
+import com.helion3.prism.util.SpatialKey;
 
 public class H2Records implements StorageAdapterRecords {
 
     private final String tablePrefix = Prism.getInstance().getConfig().getStorageCategory().getTablePrefix();
+    private final PayloadCodec payloadCodec = new PayloadCodec(
+            Prism.getInstance().getConfig().getStorageCategory().getExtraCompression(),
+            Prism.getInstance().getConfig().getStorageCategory().getExtraCompressionThreshold());
+    private final int fetchSize = Math.max(Prism.getInstance().getConfig().getStorageCategory().getQueryFetchSize(), 1);
+    private final H2StorageAdapter adapter;
+    private volatile boolean batchGeneratedKeys = true;
+
+    public H2Records(H2StorageAdapter adapter) {
+        this.adapter = adapter;
+    }
 
     @Override
     public StorageWriteResult write(List<DataContainer> containers) throws Exception {
-        String sql = String.format("INSERT INTO %srecords(%s, %s, %s, %s, %s, %s, %s, %s, %s)" +
-                        " values(?, ?, ?, ?, ?, ?, ?, ?, ?)",
+        // Records and their extra data are committed together
+        try (Connection conn = adapter.getConnection()) {
+            conn.setAutoCommit(false);
+
+            try {
+                if (!batchGeneratedKeys || !writeRows(conn, containers, true)) {
+                    writeRows(conn, containers, false);
+                }
+
+                conn.commit();
+            } catch (Exception ex) {
+                rollback(conn, ex);
+                throw ex;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes records and their extra data.
+     *
+     * Older H2 versions only return the last generated key of a batch. If
+     * that happens the batch is rolled back and the records are inserted
+     * one at a time from then on.
+     *
+     * @param conn Connection
+     * @param containers List of records
+     * @param batched Whether to insert the records as one batch
+     * @return False if the batch didn't return a key for every record
+     * @throws SQLException
+     */
+    protected boolean writeRows(Connection conn, List<DataContainer> containers, boolean batched) throws SQLException {
+        List<PayloadCodec.Payload> extraData = new ArrayList<>(containers.size());
+        List<Integer> recordIds = new ArrayList<>(containers.size());
+
+        String sql = String.format("INSERT INTO %srecords(%s, %s, %s, %s, %s, %s, %s, %s, %s, %s)" +
+                        " values(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
                 tablePrefix,
                 DataQueries.Created, DataQueries.EventName, DataQueries.WorldUuid,
                 DataQueries.X, DataQueries.Y, DataQueries.Z,
-                DataQueries.Target, DataQueries.Player, DataQueries.Cause
+                DataQueries.Target, DataQueries.Player, DataQueries.Cause, DataQueries.Chunk
         );
 
-        try (Connection conn = H2StorageAdapter.getConnection(); PreparedStatement statement = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-
+        try (PreparedStatement statement = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             for (DataContainer container : containers) {
                 DataView location = container.getView(DataQueries.Location).get();
 
@@ -76,7 +124,10 @@ public class H2Records implements StorageAdapterRecords {
                     playerUUID = player.get();
                 }
 
-                statement.setLong( 1, System.currentTimeMillis() / 1000L );
+                // Spilled records are written well after they were created
+                Date created = container.get(DataQueries.Created).filter(Date.class::isInstance).map(Date.class::cast).orElseGet(Date::new);
+
+                statement.setLong(1, created.getTime() / 1000L);
                 statement.setObject(2, container.getString(DataQueries.EventName).get());
                 statement.setObject(3, location.getString(DataQueries.WorldUuid).get());
                 statement.setInt(4, location.getInt(DataQueries.X).get());
@@ -85,118 +136,199 @@ public class H2Records implements StorageAdapterRecords {
                 statement.setString(7, container.getString(DataQueries.Target).orElse(null));
                 statement.setString(8, playerUUID);
                 statement.setString(9, container.getString(DataQueries.Cause).orElse(null));
+                statement.setLong(10, SpatialKey.of(location.getInt(DataQueries.X).get(), location.getInt(DataQueries.Z).get()));
 
                 // Remove some data not needed for extra storage
-                container.remove(DataQueries.Location);
-                container.remove(DataQueries.EventName);
-                container.remove(DataQueries.Player);
-                container.remove(DataQueries.Cause);
-                container.remove(DataQueries.Target);
+                // Work on a copy so a failed write can be retried
+                DataContainer extra = container.copy();
+                extra.remove(DataQueries.Location);
+                extra.remove(DataQueries.EventName);
+                extra.remove(DataQueries.Player);
+                extra.remove(DataQueries.Cause);
+                extra.remove(DataQueries.Target);
+                extra.remove(DataQueries.Created);
+
+                extraData.add(payloadCodec.encode(extra));
+
+                if (batched) {
+                    statement.addBatch();
+                } else {
+                    statement.executeUpdate();
+                    readGeneratedKeys(statement, recordIds);
+                }
+            }
 
-                statement.executeUpdate();
-                ResultSet keys = statement.getGeneratedKeys();
+            if (batched) {
+                statement.executeBatch();
+                readGeneratedKeys(statement, recordIds);
+            }
+        }
 
-                while (keys.next()) {
-                    writeExtraData(keys.getInt(1), DataUtil.jsonFromDataView(container).toString());
-                }
+        if (recordIds.size() != extraData.size()) {
+            if (batched) {
+                conn.rollback();
+                batchGeneratedKeys = false;
+                Prism.getInstance().getLogger().debug("H2 didn't return all generated keys for a batch, inserting records one at a time");
+                return false;
             }
+
+            throw new SQLException(String.format("Expected %d generated keys but received %d", extraData.size(), recordIds.size()));
         }
 
-        return null;
+        writeExtraData(conn, recordIds, extraData);
+        return true;
     }
 
     /**
-     * Writes extra JSON to a separate table because we don't always need it.
+     * Writes extra data to a separate table because we don't always need it.
      *
-     * @param recordId Primary key of the parent record.
-     * @param json
-     * @return
-     * @throws Exception
+     * @param conn Connection
+     * @param recordIds List of record ids
+     * @param extraData List of extra data, in the same order as the record ids
+     * @throws SQLException
      */
-    protected StorageWriteResult writeExtraData(int recordId, String json) throws Exception {
-        String sql = "INSERT INTO " + tablePrefix + "extra(record_id, json) values(?, ?)";
+    protected void writeExtraData(Connection conn, List<Integer> recordIds, List<PayloadCodec.Payload> extraData) throws SQLException {
+        String sql = "INSERT INTO " + tablePrefix + "extra(record_id, codec, payload) values(?, ?, ?)";
+
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            for (int index = 0; index < recordIds.size(); index++) {
+                statement.setInt(1, recordIds.get(index));
+                statement.setInt(2, extraData.get(index).getCodec());
+                statement.setBytes(3, extraData.get(index).getBytes());
+                statement.addBatch();
+            }
 
-        try (Connection conn = H2StorageAdapter.getConnection(); PreparedStatement statement = conn.prepareStatement(sql)) {
-            statement.setInt(1, recordId);
-            statement.setString(2, json);
-            statement.executeUpdate();
+            statement.executeBatch();
         }
+    }
 
-        return null;
+    private static void readGeneratedKeys(Statement statement, List<Integer> recordIds) throws SQLException {
+        try (ResultSet keys = statement.getGeneratedKeys()) {
+            while (keys.next()) {
+                recordIds.add(keys.getInt(1));
+            }
+        }
+    }
+
+    /**
+     * Rolls back a failed write, keeping the original exception.
+     *
+     * @param conn Connection
+     * @param ex Exception which caused the rollback
+     */
+    private static void rollback(Connection conn, Exception ex) {
+        try {
+            conn.rollback();
+        } catch (SQLException rollbackEx) {
+            ex.addSuppressed(rollbackEx);
+        }
     }
 
     @Override
     public CompletableFuture<List<Result>> query(QuerySession session, boolean translate) throws Exception {
-        // Prepare results
         List<Result> results = new ArrayList<>();
-        CompletableFuture<List<Result>> future = new CompletableFuture<>();
+        stream(session, translate, fetchSize, chunk -> {
+            results.addAll(chunk);
+            return true;
+        });
 
-        SQLQuery query = H2SQLQuery.from(session);
-        Prism.getInstance().getLogger().debug("H2 SQL Query: " + query);
+        return CompletableFuture.completedFuture(results);
+    }
 
-        try (Connection conn = H2StorageAdapter.getConnection(); PreparedStatement statement = conn.prepareStatement(query.toString()); ResultSet rs = statement.executeQuery()) {
-            List<UUID> uuidsPendingLookup = new ArrayList<>();
+    @Override
+    public void stream(QuerySession session, boolean translate, int chunkSize, ResultConsumer consumer) throws Exception {
+        SQLQuery query = H2SQLQuery.from(session);
+        Prism.getInstance().getLogger().debug("H2 SQL Query: " + query + " " + query.getParameters());
 
-            while (rs.next()) {
-                Result result = Result.from(rs.getString(DataQueries.EventName.toString()), !session.hasFlag(Flag.NO_GROUP));
+        try (Connection conn = adapter.getConnection(); PreparedStatement statement = query.prepare(conn)) {
+            statement.setFetchSize(chunkSize);
 
-                // Restore the data container
-                DataContainer data = DataContainer.createNew();
-                data.set(DataQueries.EventName, rs.getString(DataQueries.EventName.toString()));
-                String target = rs.getString(DataQueries.Target.toString());
-                data.set(DataQueries.Target, target != null ? target : "");
+            try (ResultSet rs = statement.executeQuery()) {
+                List<Result> results = new ArrayList<>(chunkSize);
+                List<UUID> uuidsPendingLookup = new ArrayList<>();
+                while (rs.next()) {
+                    results.add(readResult(session, rs, translate ? uuidsPendingLookup : null));
 
-                if (!session.hasFlag(Flag.NO_GROUP)) {
-                    data.set(DataQueries.Count, rs.getInt("total"));
-                } else {
-                    DataContainer loc = DataContainer.createNew();
-                    loc.set(DataQueries.X, rs.getInt(DataQueries.X.toString()));
-                    loc.set(DataQueries.Y, rs.getInt(DataQueries.Y.toString()));
-                    loc.set(DataQueries.Z, rs.getInt(DataQueries.Z.toString()));
-                    loc.set(DataQueries.WorldUuid, rs.getString(DataQueries.WorldUuid.toString()));
-                    data.set(DataQueries.Location, loc);
-
-                    data.set(DataQueries.Created, rs.getLong(DataQueries.Created.toString()));
-
-                    if (rs.getString("json") != null) {
-                        try {
-                            JsonObject json = new JsonParser().parse(rs.getString("json")).getAsJsonObject();
-                            DataView extra = DataUtil.dataViewFromJson(json);
-
-                            for (DataQuery key : extra.getKeys(false)) {
-                                data.set(key, extra.get(key).get());
-                            }
-                        } catch (Exception ex) {
-                            Prism.getInstance().getLogger().error("Failed to deserialize {} at {}", target, loc.toString());
-                            throw ex;
+                    if (results.size() >= chunkSize) {
+                        if (!consumer.accept(DataUtil.translateUuidsToNamesAndWait(results, uuidsPendingLookup))) {
+                            return;
                         }
+
+                        results = new ArrayList<>(chunkSize);
+                        uuidsPendingLookup = new ArrayList<>();
                     }
                 }
 
-                // Determine the final name of the event source
-                String player = rs.getString(DataQueries.Player.toString());
-                if (player != null && !player.isEmpty()) {
-                    data.set(DataQueries.Cause, player);
+                if (!results.isEmpty()) {
+                    consumer.accept(DataUtil.translateUuidsToNamesAndWait(results, uuidsPendingLookup));
+                }
+            }
+        }
+    }
 
-                    if (translate) {
-                        uuidsPendingLookup.add(UUID.fromString(player));
+    /**
+     * Builds a result from the current row.
+     *
+     * @param session QuerySession
+     * @param rs ResultSet positioned on the row
+     * @param uuidsPendingLookup Collects player UUIDs to translate, or null
+     * @return Result
+     * @throws Exception
+     */
+    private Result readResult(QuerySession session, ResultSet rs, List<UUID> uuidsPendingLookup) throws Exception {
+        Result result = Result.from(rs.getString(DataQueries.EventName.toString()), !session.hasFlag(Flag.NO_GROUP));
+
+        // Restore the data container
+        DataContainer data = DataContainer.createNew();
+        data.set(DataQueries.EventName, rs.getString(DataQueries.EventName.toString()));
+        String target = rs.getString(DataQueries.Target.toString());
+        data.set(DataQueries.Target, target != null ? target : "");
+
+        if (!session.hasFlag(Flag.NO_GROUP)) {
+            data.set(DataQueries.Count, rs.getInt("total"));
+        } else {
+            data.set(DataQueries.RecordId, rs.getLong(DataQueries.RecordId.toString()));
+
+            DataContainer loc = DataContainer.createNew();
+            loc.set(DataQueries.X, rs.getInt(DataQueries.X.toString()));
+            loc.set(DataQueries.Y, rs.getInt(DataQueries.Y.toString()));
+            loc.set(DataQueries.Z, rs.getInt(DataQueries.Z.toString()));
+            loc.set(DataQueries.WorldUuid, rs.getString(DataQueries.WorldUuid.toString()));
+            data.set(DataQueries.Location, loc);
+
+            data.set(DataQueries.Created, rs.getLong(DataQueries.Created.toString()));
+
+            byte[] payload = rs.getBytes("payload");
+            String json = rs.getString("json");
+            if (payload != null || json != null) {
+                try {
+                    // Rows written before the binary format only have json
+                    DataView extra = payload != null ? PayloadCodec.decode(rs.getInt("codec"), payload) : DataUtil.dataViewFromJson(new JsonParser().parse(json).getAsJsonObject());
+
+                    for (DataQuery key : extra.getKeys(false)) {
+                        data.set(key, extra.get(key).get());
                     }
-                } else {
-                    data.set(DataQueries.Cause, rs.getString(DataQueries.Cause.toString()));
+                } catch (Exception ex) {
+                    Prism.getInstance().getLogger().error("Failed to deserialize {} at {}", target, loc.toString());
+                    throw ex;
                 }
-
-                result.data = data;
-                results.add(result);
             }
+        }
+
+        // Determine the final name of the event source
+        String player = rs.getString(DataQueries.Player.toString());
+        if (player != null && !player.isEmpty()) {
+            data.set(DataQueries.Cause, player);
 
-            if (translate && !uuidsPendingLookup.isEmpty()) {
-                DataUtil.translateUuidsToNames(results, uuidsPendingLookup).thenAccept(future::complete);
-            } else {
-                future.complete(results);
+            if (uuidsPendingLookup != null) {
+                uuidsPendingLookup.add(UUID.fromString(player));
             }
+        } else {
+            data.set(DataQueries.Cause, rs.getString(DataQueries.Cause.toString()));
         }
 
-        return future;
+        result.data = data;
+        return result;
     }
 
     @Override
@@ -26,6 +26,7 @@ package com.helion3.prism.storage.h2;
 import com.helion3.prism.api.flags.Flag;
 import com.helion3.prism.api.query.QuerySession;
 import com.helion3.prism.api.query.SQLQuery;
+import com.helion3.prism.util.DataQueries;
 
 public class H2SQLQuery extends SQLQuery {
     public H2SQLQuery(String query) {
@@ -44,16 +45,17 @@ public class H2SQLQuery extends SQLQuery {
             query.col("COUNT(*) AS total");
             query.group("eventName", "target", "player", "cause");
         } else {
-            query.col("*").leftJoin(tablePrefix + "extra AS e", "r.id = e.record_id");
+            query.col("*").col("r.id AS " + DataQueries.RecordId).leftJoin(tablePrefix + "extra AS e", "r.id = e.record_id");
         }
 
         query.conditions(session.getQuery().getConditions());
 
         // Sort by timestamp if we're not grouping
         if (session.hasFlag(Flag.NO_GROUP)) {
-            query.order("created " + session.getSortBy().getString());
+            query.order("r.created " + session.getSortBy().getString(), "r.id " + session.getSortBy().getString());
+            session.getQuery().getKeyset().ifPresent(keyset -> query.after(keyset, session.getSortBy()));
         }
 
-        return query.build();
+        return query.limit(session.getQuery().getLimit()).build();
     }
 }
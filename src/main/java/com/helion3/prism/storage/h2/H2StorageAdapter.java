@@ -26,11 +26,13 @@ package com.helion3.prism.storage.h2;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Date;
 
 import com.helion3.prism.util.DataQueries;
 import com.helion3.prism.util.DateUtil;
+import com.helion3.prism.util.SpatialKey;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import org.spongepowered.api.Sponge;
@@ -41,22 +43,35 @@ import com.helion3.prism.Prism;
 import com.helion3.prism.api.storage.StorageAdapter;
 import com.helion3.prism.api.storage.StorageAdapterRecords;
 import com.helion3.prism.api.storage.StorageAdapterSettings;
+import com.helion3.prism.configuration.category.ShardCategory;
 
 public class H2StorageAdapter implements StorageAdapter {
 
+    private static final int SCHEMA_VERSION = 6;
+
     private final String expiration = Prism.getInstance().getConfig().getStorageCategory().getExpireRecords();
     private final String tablePrefix = Prism.getInstance().getConfig().getStorageCategory().getTablePrefix();
     private final int purgeBatchLimit = Prism.getInstance().getConfig().getStorageCategory().getPurgeBatchLimit();
     private final SqlService sql = Sponge.getServiceManager().provide(SqlService.class).get();
-    private final Path dbPath = Prism.getInstance().getPath().getParent().resolve(Prism.getInstance().getConfig().getStorageCategory().getDatabase());
+    private final Path dbPath;
     private final StorageAdapterRecords records;
-    private static HikariDataSource db;
+    private HikariDataSource db;
 
     /**
      * Create a new instance of the H2 storage adapter.
      */
     public H2StorageAdapter() {
-        records = new H2Records();
+        this(ShardCategory.of(Prism.getInstance().getConfig().getStorageCategory()));
+    }
+
+    /**
+     * Create a new instance of the H2 storage adapter for a database.
+     *
+     * @param connection ShardCategory describing the database
+     */
+    public H2StorageAdapter(ShardCategory connection) {
+        dbPath = Prism.getInstance().getPath().getParent().resolve(connection.getDatabase());
+        records = new H2Records(this);
     }
 
     /**
@@ -65,7 +80,7 @@ public class H2StorageAdapter implements StorageAdapter {
      * @return Connection
      * @throws SQLException
      */
-    protected static Connection getConnection() throws SQLException {
+    protected Connection getConnection() throws SQLException {
         return db.getConnection();
     }
 
@@ -106,6 +121,14 @@ public class H2StorageAdapter implements StorageAdapter {
      */
     protected void createTables() throws SQLException {
         try (Connection conn = getConnection()) {
+            boolean existing;
+            try (PreparedStatement statement = conn.prepareStatement("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE UPPER(TABLE_NAME) = UPPER(?)")) {
+                statement.setString(1, tablePrefix + "records");
+                try (ResultSet rs = statement.executeQuery()) {
+                    existing = rs.next() && rs.getInt(1) > 0;
+                }
+            }
+
             String records = "CREATE TABLE IF NOT EXISTS " + tablePrefix + "records ("
                     + "id int primary key auto_increment, "
                     + DataQueries.Created + " bigint, "
@@ -116,13 +139,16 @@ public class H2StorageAdapter implements StorageAdapter {
                     + DataQueries.Z + " int, "
                     + DataQueries.Target + " varchar(255), "
                     + DataQueries.Player + " UUID, "
-                    + DataQueries.Cause + " varchar(64))";
+                    + DataQueries.Cause + " varchar(64), "
+                    + DataQueries.Chunk + " bigint)";
             conn.prepareStatement(records).execute();
 
             String extra = "CREATE TABLE IF NOT EXISTS " + tablePrefix + "extra ("
                     + "id int primary key auto_increment, "
                     + "record_id int, "
                     + "json varchar(65535),"
+                    + "codec tinyint NOT NULL DEFAULT 0,"
+                    + "payload blob,"
                     + "CONSTRAINT " + tablePrefix + "extra_ibfk_1 "
                     + "FOREIGN KEY (record_id) "
                     + "REFERENCES " + tablePrefix + "records (id) "
@@ -141,7 +167,14 @@ public class H2StorageAdapter implements StorageAdapter {
             String extraIndex = "CREATE INDEX IF NOT EXISTS recordId ON " + tablePrefix + "extra(record_id)";
             conn.prepareStatement(extraIndex).execute();
 
-            if (Prism.getInstance().getConfig().getGeneralCategory().getSchemaVersion() == 1) {
+            String meta = "CREATE TABLE IF NOT EXISTS " + tablePrefix + "meta ("
+                    + "meta_key varchar(64) primary key, "
+                    + "meta_value varchar(255) NOT NULL)";
+            conn.prepareStatement(meta).execute();
+
+            int version = getSchemaVersion(conn, existing);
+
+            if (version == 1) {
                 // Expand target: 55 -> 255
                 conn.prepareStatement(String.format("ALTER TABLE %srecords ALTER COLUMN %s varchar(255);",
                         tablePrefix,
@@ -153,12 +186,91 @@ public class H2StorageAdapter implements StorageAdapter {
                         tablePrefix
                 )).execute();
 
-                Prism.getInstance().getConfig().getGeneralCategory().setSchemaVersion(2);
-                Prism.getInstance().getConfiguration().saveConfiguration();
+                version = setSchemaVersion(conn, 2);
+            }
+
+            if (version == 2) {
+                // Binary extra data, json is kept for existing rows
+                conn.prepareStatement(String.format("ALTER TABLE %sextra ADD COLUMN IF NOT EXISTS payload blob;",
+                        tablePrefix
+                )).execute();
+
+                version = setSchemaVersion(conn, 3);
+            }
+
+            if (version == 3) {
+                // Codec of the payload, rows may be compressed
+                conn.prepareStatement(String.format("ALTER TABLE %sextra ADD COLUMN IF NOT EXISTS codec tinyint NOT NULL DEFAULT 0;",
+                        tablePrefix
+                )).execute();
+
+                version = setSchemaVersion(conn, 4);
             }
+
+            if (version == 4) {
+                // Dictionary columns are MySQL only, nothing to change
+                version = setSchemaVersion(conn, 5);
+            }
+
+            if (version == 5) {
+                // Indexed spatial key for radius lookups
+                conn.prepareStatement(String.format("ALTER TABLE %srecords ADD COLUMN IF NOT EXISTS %s bigint;",
+                        tablePrefix, DataQueries.Chunk
+                )).execute();
+
+                conn.prepareStatement(String.format("UPDATE %srecords SET %s = %s WHERE %2$s IS NULL;",
+                        tablePrefix, DataQueries.Chunk, SpatialKey.sqlExpression(DataQueries.X.toString(), DataQueries.Z.toString())
+                )).execute();
+
+                version = setSchemaVersion(conn, 6);
+            }
+
+            String chunkIndex = "CREATE INDEX IF NOT EXISTS chunk ON " + tablePrefix + "records("
+                    + DataQueries.WorldUuid + ", " + DataQueries.Chunk + ")";
+            conn.prepareStatement(chunkIndex).execute();
         }
     }
 
+    /**
+     * Returns the schema version of this database. Each database keeps its
+     * own, so shards are migrated independently. A database which had
+     * tables before its version was stored starts from the first version,
+     * its migrations check what has already been applied.
+     *
+     * @param conn Connection
+     * @param existing Whether the records table existed already
+     * @return Schema version
+     * @throws SQLException
+     */
+    private int getSchemaVersion(Connection conn, boolean existing) throws SQLException {
+        String sql = "SELECT meta_value FROM " + tablePrefix + "meta WHERE meta_key = 'schema-version'";
+        try (PreparedStatement statement = conn.prepareStatement(sql); ResultSet rs = statement.executeQuery()) {
+            if (rs.next()) {
+                return Integer.parseInt(rs.getString(1));
+            }
+        }
+
+        return setSchemaVersion(conn, existing ? 1 : SCHEMA_VERSION);
+    }
+
+    /**
+     * Stores the schema version of this database.
+     *
+     * @param conn Connection
+     * @param version Schema version
+     * @return Schema version
+     * @throws SQLException
+     */
+    private int setSchemaVersion(Connection conn, int version) throws SQLException {
+        String sql = "MERGE INTO " + tablePrefix + "meta(meta_key, meta_value) KEY(meta_key) VALUES ('schema-version', ?)";
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            statement.setString(1, Integer.toString(version));
+            statement.executeUpdate();
+        }
+
+        return version;
+    }
+
     /**
      * Removes expires records and extra information from the database.
      */
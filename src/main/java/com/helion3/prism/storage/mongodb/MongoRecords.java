@@ -28,6 +28,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -39,10 +40,12 @@ import com.helion3.prism.api.query.*;
 import com.helion3.prism.api.records.Result;
 import com.helion3.prism.util.PrimitiveArray;
 import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.spongepowered.api.data.DataContainer;
 import org.spongepowered.api.data.DataQuery;
 import org.spongepowered.api.data.DataView;
 
+import com.google.common.collect.BoundType;
 import com.google.common.collect.Range;
 import com.helion3.prism.Prism;
 import com.helion3.prism.api.query.ConditionGroup.Operator;
@@ -52,6 +55,8 @@ import com.helion3.prism.api.storage.StorageWriteResult;
 import com.helion3.prism.util.DataQueries;
 import com.helion3.prism.util.DataUtil;
 import com.helion3.prism.util.DateUtil;
+import com.helion3.prism.util.SpatialKey;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.client.AggregateIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
@@ -61,9 +66,17 @@ import com.mongodb.client.model.WriteModel;
 
 public class MongoRecords implements StorageAdapterRecords {
 
+    private static final int DUPLICATE_KEY = 11000;
+
     private final BulkWriteOptions bulkWriteOptions = new BulkWriteOptions().ordered(false);
     private final String expiration = Prism.getInstance().getConfig().getStorageCategory().getExpireRecords();
     private final boolean expires = Prism.getInstance().getConfig().getStorageCategory().isShouldExpire();
+    private final int fetchSize = Math.max(Prism.getInstance().getConfig().getStorageCategory().getQueryFetchSize(), 1);
+    private final MongoStorageAdapter adapter;
+
+    public MongoRecords(MongoStorageAdapter adapter) {
+        this.adapter = adapter;
+    }
 
     /**
      * Converts a DataView to a Document, recursively if needed.
@@ -150,12 +163,26 @@ public class MongoRecords implements StorageAdapterRecords {
 
    @Override
    public StorageWriteResult write(List<DataContainer> containers) throws Exception {
-       MongoCollection<Document> collection = MongoStorageAdapter.getCollection(MongoStorageAdapter.collectionEventRecordsName);
+       MongoCollection<Document> collection = adapter.getCollection(MongoStorageAdapter.collectionEventRecordsName);
 
        // Build an array of documents
        List<WriteModel<Document>> documents = new ArrayList<>();
        for (DataContainer container : containers) {
+           // Ids are assigned once and kept with the record, so writing it
+           // again after a partial failure can't insert it twice
+           String id = container.getString(DataQueries.RecordId).orElse(null);
+           if (id == null) {
+               id = new ObjectId().toHexString();
+               container.set(DataQueries.RecordId, id);
+           }
+
            Document document = documentFromView(container);
+           document.remove(DataQueries.RecordId.toString());
+           document.put("_id", new ObjectId(id));
+
+           // Spatial key, used for radius lookups
+           Document location = (Document) document.get(DataQueries.Location.toString());
+           location.append(DataQueries.Chunk.toString(), SpatialKey.of(location.getInteger(DataQueries.X.toString()), location.getInteger(DataQueries.Z.toString())));
 
            // Prism.getInstance().getLogger().debug(DataUtil.jsonFromDataView(container).toString());
 
@@ -168,8 +195,14 @@ public class MongoRecords implements StorageAdapterRecords {
            documents.add(new InsertOneModel<>(document));
        }
 
-       // Write
-       collection.bulkWrite(documents, bulkWriteOptions);
+       // Write, records which were inserted by an earlier attempt are skipped
+       try {
+           collection.bulkWrite(documents, bulkWriteOptions);
+       } catch (MongoBulkWriteException ex) {
+           if (ex.getWriteConcernError() != null || ex.getWriteErrors().stream().anyMatch(error -> error.getCode() != DUPLICATE_KEY)) {
+               throw ex;
+           }
+       }
 
        // @todo implement real results, BulkWriteResult
 
@@ -188,12 +221,20 @@ public class MongoRecords implements StorageAdapterRecords {
        for (Condition fieldOrGroup : fieldsOrGroups) {
            if (fieldOrGroup instanceof ConditionGroup) {
                ConditionGroup group = (ConditionGroup) fieldOrGroup;
-               Document subDoc = buildConditions(group.getConditions());
 
                if (group.getOperator().equals(Operator.OR)) {
-                   conditions.append("$or", subDoc);
+                   // $or takes one document per alternative
+                   List<Document> alternatives = new ArrayList<>();
+                   for (Condition condition : group.getConditions()) {
+                       alternatives.add(buildConditions(Collections.singletonList(condition)));
+                   }
+
+                   // Several groups can't share one $or key
+                   @SuppressWarnings("unchecked")
+                   List<Document> and = (List<Document>) conditions.computeIfAbsent("$and", key -> new ArrayList<Document>());
+                   and.add(new Document("$or", alternatives));
                } else {
-                   conditions.putAll(subDoc);
+                   conditions.putAll(buildConditions(group.getConditions()));
                }
            } else {
                FieldCondition field = (FieldCondition) fieldOrGroup;
@@ -232,7 +273,8 @@ public class MongoRecords implements StorageAdapterRecords {
 
                    Range<?> range = (Range<?>) field.getValue();
 
-                   Document between = new Document("$gte", range.lowerEndpoint()).append("$lte", range.upperEndpoint());
+                   Document between = new Document(range.lowerBoundType() == BoundType.CLOSED ? "$gte" : "$gt", range.lowerEndpoint())
+                           .append(range.upperBoundType() == BoundType.CLOSED ? "$lte" : "$lt", range.upperEndpoint());
                    conditions.put(field.getFieldName().toString(), between);
                }
            }
@@ -243,22 +285,49 @@ public class MongoRecords implements StorageAdapterRecords {
 
    @Override
    public CompletableFuture<List<Result>> query(QuerySession session, boolean translate) throws Exception {
+       List<Result> results = new ArrayList<>();
+       stream(session, translate, fetchSize, chunk -> {
+           results.addAll(chunk);
+           return true;
+       });
+
+       return CompletableFuture.completedFuture(results);
+   }
+
+   @Override
+   public void stream(QuerySession session, boolean translate, int chunkSize, ResultConsumer consumer) throws Exception {
        Query query = session.getQuery();
        checkNotNull(query);
 
-       // Prepare results
-       List<Result> results = new ArrayList<>();
-       CompletableFuture<List<Result>> future = new CompletableFuture<>();
-
        // Get collection
-       MongoCollection<Document> collection = MongoStorageAdapter.getCollection(MongoStorageAdapter.collectionEventRecordsName);
+       MongoCollection<Document> collection = adapter.getCollection(MongoStorageAdapter.collectionEventRecordsName);
 
        // Append all conditions
-       Document matcher = new Document("$match", buildConditions(query.getConditions()));
+       Document conditions = buildConditions(query.getConditions());
+       if (session.hasFlag(Flag.NO_GROUP) && query.getKeyset().isPresent()) {
+           // Continue after the last record of the previous page
+           Keyset keyset = query.getKeyset().get();
+           String comparator = session.getSortBy() == Sort.NEWEST_FIRST ? "$lt" : "$gt";
+
+           List<Document> after = new ArrayList<>();
+           after.add(new Document(DataQueries.Created.toString(), new Document(comparator, keyset.getCreated())));
+           after.add(new Document(DataQueries.Created.toString(), keyset.getCreated()).append("_id", new Document(comparator, keyset.getId())));
+
+           List<Document> and = new ArrayList<>();
+           and.add(conditions);
+           and.add(new Document("$or", after));
+           conditions = new Document("$and", and);
+       }
+
+       Document matcher = new Document("$match", conditions);
 
        // Sorting. Newest first for rollback and oldest first for restore.
        Document sortFields = new Document();
        sortFields.put(DataQueries.Created.toString(), session.getSortBy().getValue());
+       if (session.hasFlag(Flag.NO_GROUP)) {
+           sortFields.put("_id", session.getSortBy().getValue());
+       }
+
        Document sorter = new Document("$sort", sortFields);
 
        // Offset/Limit
@@ -305,8 +374,9 @@ public class MongoRecords implements StorageAdapterRecords {
            Prism.getInstance().getLogger().debug("MongoDB Query: " + pipeline);
        }
 
-       // Iterate results and build our event record list
-       try (MongoCursor<Document> cursor = aggregated.iterator()) {
+       // Iterate results and build our event record list, a batch at a time
+       try (MongoCursor<Document> cursor = aggregated.batchSize(chunkSize).iterator()) {
+           List<Result> results = new ArrayList<>(chunkSize);
            List<UUID> uuidsPendingLookup = new ArrayList<>();
 
            while (cursor.hasNext()) {
@@ -318,10 +388,12 @@ public class MongoRecords implements StorageAdapterRecords {
 
                if (!session.hasFlag(Flag.NO_GROUP)) {
                    data.set(DataQueries.Count, wrapper.get(DataQueries.Count.toString()));
+               } else {
+                   data.set(DataQueries.RecordId, document.get("_id"));
                }
 
                // Build our result object
-               Result result = Result.from(wrapper.getString(DataQueries.EventName.toString()), !session.hasFlag(Flag.NO_GROUP));
+               Result result = Result.from(document.getString(DataQueries.EventName.toString()), !session.hasFlag(Flag.NO_GROUP));
 
                // Determine the final name of the event source
                if (document.containsKey(DataQueries.Player.toString())) {
@@ -337,16 +409,21 @@ public class MongoRecords implements StorageAdapterRecords {
 
                result.data = data;
                results.add(result);
+
+               if (results.size() >= chunkSize) {
+                   if (!consumer.accept(DataUtil.translateUuidsToNamesAndWait(results, uuidsPendingLookup))) {
+                       return;
+                   }
+
+                   results = new ArrayList<>(chunkSize);
+                   uuidsPendingLookup = new ArrayList<>();
+               }
            }
 
-           if (translate && !uuidsPendingLookup.isEmpty()) {
-               DataUtil.translateUuidsToNames(results, uuidsPendingLookup).thenAccept(future::complete);
-           } else {
-               future.complete(results);
+           if (!results.isEmpty()) {
+               consumer.accept(DataUtil.translateUuidsToNamesAndWait(results, uuidsPendingLookup));
            }
        }
-
-       return future;
    }
 
    /**
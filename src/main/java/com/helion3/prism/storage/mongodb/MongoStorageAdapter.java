@@ -28,15 +28,26 @@ import com.helion3.prism.Prism;
 import com.helion3.prism.api.storage.StorageAdapter;
 import com.helion3.prism.api.storage.StorageAdapterRecords;
 import com.helion3.prism.api.storage.StorageAdapterSettings;
+import com.helion3.prism.configuration.category.ShardCategory;
 import com.helion3.prism.storage.mongodb.codec.PrimitiveArrayCodec;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoClientOptions;
 import com.mongodb.MongoCredential;
 import com.mongodb.ServerAddress;
+import com.helion3.prism.util.SpatialKey;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.bson.Document;
@@ -45,23 +56,30 @@ import org.bson.codecs.configuration.CodecRegistry;
 
 public class MongoStorageAdapter implements StorageAdapter {
 
-    private static MongoClient mongoClient = null;
-    private static MongoDatabase database;
+    private MongoClient mongoClient = null;
+    private MongoDatabase database;
     private final MongoRecords records;
+    private final ShardCategory connection;
     private final String databaseName;
 
-    protected static String collectionEventRecordsName;
+    protected static final String collectionEventRecordsName = "records";
 
     /**
      *
      */
     public MongoStorageAdapter() {
-        databaseName = Prism.getInstance().getConfig().getStorageCategory().getDatabase();
-
-        // Collections
-        collectionEventRecordsName = "records";
+        this(ShardCategory.of(Prism.getInstance().getConfig().getStorageCategory()));
+    }
 
-        records = new MongoRecords();
+    /**
+     * Create a new instance of the MongoDB storage adapter for a database.
+     *
+     * @param connection ShardCategory describing the database
+     */
+    public MongoStorageAdapter(ShardCategory connection) {
+        this.connection = connection;
+        databaseName = connection.getDatabase();
+        records = new MongoRecords(this);
     }
 
     /**
@@ -71,12 +89,12 @@ public class MongoStorageAdapter implements StorageAdapter {
      */
     @Override
     public boolean connect() throws Exception {
-        ServerAddress address = new ServerAddress(Prism.getInstance().getConfig().getStorageCategory().getAddress(), ServerAddress.defaultPort());
+        ServerAddress address = new ServerAddress(connection.getAddress(), ServerAddress.defaultPort());
 
         MongoCredential credential = MongoCredential.createCredential(
-                Prism.getInstance().getConfig().getStorageCategory().getUsername(),
+                connection.getUsername(),
                 databaseName,
-                Prism.getInstance().getConfig().getStorageCategory().getPassword().toCharArray()
+                connection.getPassword().toCharArray()
         );
 
         CodecRegistry codecRegistry = CodecRegistries.fromRegistries(
@@ -96,6 +114,11 @@ public class MongoStorageAdapter implements StorageAdapter {
             getCollection(collectionEventRecordsName).createIndex(
                     new Document("Location.X", 1).append("Location.Z", 1).append("Location.Y", 1).append("Created", -1));
             getCollection(collectionEventRecordsName).createIndex(new Document("Created", -1).append("EventName", 1));
+            getCollection(collectionEventRecordsName).createIndex(
+                    new Document("Location.WorldUuid", 1).append("Location.Chunk", 1).append("Created", -1));
+
+            // Records written before spatial keys existed
+            addSpatialKeys();
 
             // TTL
             IndexOptions options = new IndexOptions().expireAfter(0L, TimeUnit.SECONDS);
@@ -107,6 +130,47 @@ public class MongoStorageAdapter implements StorageAdapter {
         }
     }
 
+    /**
+     * Adds the spatial key to records which don't have one yet.
+     */
+    private void addSpatialKeys() {
+        MongoCollection<Document> collection = getCollection(collectionEventRecordsName);
+        Document missing = new Document("Location.Chunk", new Document("$exists", false));
+        if (collection.countDocuments(missing) == 0) {
+            return;
+        }
+
+        Prism.getInstance().getLogger().info("Adding spatial keys to existing records, this may take a while...");
+
+        List<WriteModel<Document>> updates = new ArrayList<>();
+        long updated = 0;
+        try (MongoCursor<Document> cursor = collection.find(missing).projection(Projections.include("Location.X", "Location.Z")).batchSize(1000).iterator()) {
+            while (cursor.hasNext()) {
+                Document document = cursor.next();
+                Document location = (Document) document.get("Location");
+                if (location == null || !(location.get("X") instanceof Number) || !(location.get("Z") instanceof Number)) {
+                    continue;
+                }
+
+                long chunk = SpatialKey.of(((Number) location.get("X")).intValue(), ((Number) location.get("Z")).intValue());
+                updates.add(new UpdateOneModel<>(Filters.eq("_id", document.get("_id")), Updates.set("Location.Chunk", chunk)));
+
+                if (updates.size() >= 1000) {
+                    collection.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+                    updated += updates.size();
+                    updates.clear();
+                    Prism.getInstance().getLogger().info("Added spatial keys to {} records", updated);
+                }
+            }
+        }
+
+        if (!updates.isEmpty()) {
+            collection.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+        }
+
+        Prism.getInstance().getLogger().info("Finished adding spatial keys");
+    }
+
     @Override
     public StorageAdapterRecords records() {
         return records;
@@ -122,7 +186,7 @@ public class MongoStorageAdapter implements StorageAdapter {
     * @param collectionName
     * @return
     */
-   protected static MongoCollection<Document> getCollection(String collectionName) {
+   protected MongoCollection<Document> getCollection(String collectionName) {
        try {
            return database.getCollection(collectionName);
        } catch (Exception e) {
@@ -0,0 +1,172 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.storage.mysql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the low-cardinality strings of a record, like its event, target and
+ * cause, to the small integer ids stored in the records table.
+ *
+ * Ids never change once assigned, so both directions are cached for the
+ * lifetime of the adapter. Values added by another server sharing the
+ * database are loaded on first use.
+ */
+public class MySQLDictionary {
+
+    private final MySQLStorageAdapter adapter;
+    private final String tablePrefix;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Map<Integer, String> values = new ConcurrentHashMap<>();
+
+    /**
+     * Create a dictionary backed by the dictionary table.
+     *
+     * @param adapter MySQLStorageAdapter owning the table
+     * @param tablePrefix String table prefix
+     */
+    public MySQLDictionary(MySQLStorageAdapter adapter, String tablePrefix) {
+        this.adapter = adapter;
+        this.tablePrefix = tablePrefix;
+    }
+
+    /**
+     * Loads every known entry into the cache.
+     *
+     * @param conn Connection
+     * @throws SQLException
+     */
+    public void load(Connection conn) throws SQLException {
+        try (PreparedStatement statement = conn.prepareStatement("SELECT id, value FROM " + tablePrefix + "dictionary");
+                ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                cache(rs.getInt(1), rs.getString(2));
+            }
+        }
+    }
+
+    /**
+     * Returns the id of a value, adding it to the dictionary if it's new.
+     *
+     * New entries are committed on their own connection so a rolled back
+     * write can't leave an id in the cache which doesn't exist.
+     *
+     * @param value String value
+     * @return Id, or null for a null value
+     * @throws SQLException
+     */
+    public Integer getOrCreateId(String value) throws SQLException {
+        if (value == null) {
+            return null;
+        }
+
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+
+        try (Connection conn = adapter.getConnection()) {
+            insert(conn, value);
+            id = selectId(conn, value);
+        }
+
+        cache(id, value);
+        return id;
+    }
+
+    private void insert(Connection conn, String value) throws SQLException {
+        try (PreparedStatement statement = conn.prepareStatement("INSERT IGNORE INTO " + tablePrefix + "dictionary(value) VALUES (?)")) {
+            statement.setString(1, value);
+            statement.executeUpdate();
+        }
+    }
+
+    private int selectId(Connection conn, String value) throws SQLException {
+        try (PreparedStatement statement = conn.prepareStatement("SELECT id FROM " + tablePrefix + "dictionary WHERE value = ?")) {
+            statement.setString(1, value);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Failed to add '" + value + "' to the dictionary");
+                }
+
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    /**
+     * Returns an SQL expression evaluating to the id of the value bound to
+     * its placeholder. The text never changes, so the statement can be
+     * cached. An unknown value yields 0, which is never assigned, so it
+     * matches nothing and doesn't turn a NOT IN into NULL.
+     *
+     * @return String SQL expression
+     */
+    public String getIdPlaceholder() {
+        return "COALESCE((SELECT id FROM " + tablePrefix + "dictionary WHERE value = ?), 0)";
+    }
+
+    /**
+     * Returns the value of an id. Ids which aren't cached are looked up on
+     * a separate connection, the caller's may be busy streaming results.
+     *
+     * @param id Id, 0 is treated as SQL NULL
+     * @return String value, or null for a null id
+     * @throws SQLException
+     */
+    public String getValue(int id) throws SQLException {
+        if (id == 0) {
+            return null;
+        }
+
+        String value = values.get(id);
+        if (value != null) {
+            return value;
+        }
+
+        try (Connection conn = adapter.getConnection(); PreparedStatement statement = conn.prepareStatement("SELECT value FROM " + tablePrefix + "dictionary WHERE id = ?")) {
+            statement.setInt(1, id);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Unknown dictionary id " + id);
+                }
+
+                value = rs.getString(1);
+            }
+        }
+
+        cache(id, value);
+        return value;
+    }
+
+    private void cache(int id, String value) {
+        ids.put(value, id);
+        values.put(id, value);
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.storage.mysql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.helion3.prism.Prism;
+
+/**
+ * Splits the records and extra tables into RANGE partitions on the created
+ * column, one per day or week, so expired records are removed by dropping
+ * whole partitions instead of deleting them row by row.
+ *
+ * Every table ends with a catch-all partition which future partitions are
+ * split from ahead of time. Rows are never rejected when that falls behind,
+ * they just land in the catch-all until the next split.
+ *
+ * Partitioned tables can't have foreign keys, so extra rows carry the
+ * created time of their record and are partitioned the same way.
+ */
+public class MySQLPartitions {
+
+    private static final String HISTORY = "phistory";
+    private static final String FUTURE = "pfuture";
+    private static final int PERIODS_AHEAD = 3;
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+
+    private final MySQLStorageAdapter adapter;
+    private final String tablePrefix;
+    private final String period;
+    private volatile boolean partitioned;
+    private volatile boolean recordCreated;
+    private volatile boolean foreignKey;
+
+    /**
+     * Create a partition manager for the records and extra tables.
+     *
+     * @param adapter MySQLStorageAdapter owning the tables
+     * @param tablePrefix String table prefix
+     * @param period String partition period, none, day or week
+     */
+    public MySQLPartitions(MySQLStorageAdapter adapter, String tablePrefix, String period) {
+        this.adapter = adapter;
+        this.tablePrefix = tablePrefix;
+        this.period = period.toLowerCase();
+    }
+
+    /**
+     * Returns whether a partition period is configured.
+     *
+     * @return True if partitioning is enabled
+     */
+    public boolean isEnabled() {
+        return period.equals("day") || period.equals("week");
+    }
+
+    /**
+     * Returns whether the records table is partitioned. This follows the
+     * table rather than the configuration, a partitioned table stays
+     * partitioned when the period is set back to none.
+     *
+     * @return True if the records table is partitioned
+     */
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+
+    /**
+     * Returns whether extra rows carry the created time of their record.
+     * This is the case as soon as partitioning starts, so rows written
+     * while the tables are rebuilt end up in the right partition.
+     *
+     * @return True if the extra table has a record_created column
+     */
+    public boolean hasRecordCreated() {
+        return recordCreated;
+    }
+
+    /**
+     * Returns whether extra rows are still removed together with their
+     * record by a foreign key. Partitioning drops it first.
+     *
+     * @return True if the extra table has a foreign key
+     */
+    public boolean hasForeignKey() {
+        return foreignKey;
+    }
+
+    /**
+     * Reads whether the records table is partitioned.
+     *
+     * @param conn Connection
+     * @throws SQLException
+     */
+    public void load(Connection conn) throws SQLException {
+        partitioned = !getBounds(conn, "records").isEmpty();
+        recordCreated = adapter.getColumnType(conn, "extra", "record_created").isPresent();
+        foreignKey = !getForeignKeys(conn).isEmpty();
+    }
+
+    /**
+     * Partitions existing records and extra tables. Both are rebuilt, which
+     * may take a long time for large tables.
+     *
+     * Each step checks whether it has been applied already, so a conversion
+     * which failed partway continues where it stopped the next time.
+     *
+     * @param conn Connection
+     * @throws SQLException
+     */
+    public void partition(Connection conn) throws SQLException {
+        List<String> foreignKeys = getForeignKeys(conn);
+        if (!foreignKeys.isEmpty()) {
+            for (String name : foreignKeys) {
+                execute(conn, String.format("ALTER TABLE %sextra DROP FOREIGN KEY `%s`;", tablePrefix, name));
+            }
+
+            Prism.getInstance().getLogger().info("Partitioning: dropped the foreign key of the extra table");
+        }
+
+        // Expired extra rows are deleted along with their records from here on
+        foreignKey = false;
+
+        if (!adapter.getColumnType(conn, "extra", "record_created").isPresent()) {
+            execute(conn, String.format("ALTER TABLE %sextra ADD COLUMN record_created int(10) unsigned NOT NULL DEFAULT 0;", tablePrefix));
+            Prism.getInstance().getLogger().info("Partitioning: added record_created to the extra table");
+        }
+
+        // Rows written from here on carry the time themselves, earlier ones are filled in below
+        recordCreated = true;
+        long[] ids = adapter.getIdRange(conn, "extra");
+        adapter.updateInBatches(conn, String.format("UPDATE %sextra AS e JOIN %srecords AS r ON r.id = e.record_id SET e.record_created = r.created "
+                + "WHERE e.id >= ? AND e.id < ? AND e.record_created = 0;", tablePrefix, tablePrefix), ids[0], ids[1], "Copied record times to extra rows");
+
+        // Every unique key of a partitioned table must contain its partitioning column
+        if (!hasKeyColumn(conn, "extra", "PRIMARY", "record_created")) {
+            execute(conn, String.format("ALTER TABLE %sextra DROP PRIMARY KEY, ADD PRIMARY KEY (`id`, `record_created`), "
+                    + "DROP KEY `record_id`, ADD KEY `record_id` (`record_id`, `record_created`);", tablePrefix));
+            Prism.getInstance().getLogger().info("Partitioning: rebuilt the keys of the extra table");
+        }
+
+        if (!hasKeyColumn(conn, "records", "PRIMARY", "created")) {
+            execute(conn, String.format("ALTER TABLE %srecords DROP PRIMARY KEY, ADD PRIMARY KEY (`id`, `created`);", tablePrefix));
+            Prism.getInstance().getLogger().info("Partitioning: rebuilt the primary key of the records table");
+        }
+
+        // Extra first, so a records table which is partitioned always has a partitioned extra table
+        String partitions = getInitialPartitions(LocalDate.now(ZoneOffset.UTC));
+        if (getBounds(conn, "extra").isEmpty()) {
+            execute(conn, String.format("ALTER TABLE %sextra PARTITION BY RANGE (record_created) (%s);", tablePrefix, partitions));
+            Prism.getInstance().getLogger().info("Partitioning: partitioned the extra table");
+        }
+
+        execute(conn, String.format("ALTER TABLE %srecords PARTITION BY RANGE (created) (%s);", tablePrefix, partitions));
+        partitioned = true;
+    }
+
+    /**
+     * Returns the foreign keys of the extra table. They're named
+     * differently by older schemas.
+     *
+     * @param conn Connection
+     * @return List of constraint names
+     * @throws SQLException
+     */
+    private List<String> getForeignKeys(Connection conn) throws SQLException {
+        List<String> foreignKeys = new ArrayList<>();
+        String sql = "SELECT CONSTRAINT_NAME FROM information_schema.REFERENTIAL_CONSTRAINTS "
+                + "WHERE CONSTRAINT_SCHEMA = DATABASE() AND TABLE_NAME = ?;";
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            statement.setString(1, tablePrefix + "extra");
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    foreignKeys.add(rs.getString(1));
+                }
+            }
+        }
+
+        return foreignKeys;
+    }
+
+    /**
+     * Checks whether a column is part of a key.
+     *
+     * @param conn Connection
+     * @param table String table name, without prefix
+     * @param key String key name
+     * @param column String column name
+     * @return True if the key contains the column
+     * @throws SQLException
+     */
+    private boolean hasKeyColumn(Connection conn, String table, String key, String column) throws SQLException {
+        String sql = "SELECT 1 FROM information_schema.STATISTICS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = ? AND COLUMN_NAME = ?;";
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            statement.setString(1, tablePrefix + table);
+            statement.setString(2, key);
+            statement.setString(3, column);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Splits partitions for upcoming periods off the catch-all partition.
+     * Each table is checked on its own so an interrupted split is finished
+     * the next time.
+     *
+     * @param conn Connection
+     * @return The amount of partitions added to the records table
+     * @throws SQLException
+     */
+    public int createAhead(Connection conn) throws SQLException {
+        if (!partitioned || !isEnabled()) {
+            return 0;
+        }
+
+        LocalDate until = next(start(LocalDate.now(ZoneOffset.UTC)));
+        for (int index = 0; index < PERIODS_AHEAD; index++) {
+            until = next(until);
+        }
+
+        int created = 0;
+        for (String table : new String[] {"extra", "records"}) {
+            Map<String, Long> bounds = getBounds(conn, table);
+            if (!bounds.containsKey(FUTURE)) {
+                continue;
+            }
+
+            long last = bounds.values().stream().filter(bound -> bound != Long.MAX_VALUE).mapToLong(Long::longValue).max().orElse(0);
+            LocalDate from = Instant.ofEpochSecond(last).atZone(ZoneOffset.UTC).toLocalDate();
+
+            List<String> definitions = new ArrayList<>();
+            while (from.isBefore(until)) {
+                LocalDate end = next(start(from));
+                definitions.add(definition(from.format(NAME_FORMAT), epochSecond(end)));
+                from = end;
+            }
+
+            if (definitions.isEmpty()) {
+                continue;
+            }
+
+            definitions.add(definition(FUTURE, Long.MAX_VALUE));
+            execute(conn, String.format("ALTER TABLE %s%s REORGANIZE PARTITION %s INTO (%s);",
+                    tablePrefix, table, FUTURE, String.join(", ", definitions)));
+
+            if (table.equals("records")) {
+                created = definitions.size() - 1;
+            }
+        }
+
+        return created;
+    }
+
+    /**
+     * Drops partitions which only hold records created at or before the
+     * cutoff. Records live until the whole period of their partition has
+     * expired.
+     *
+     * @param conn Connection
+     * @param cutoff Epoch second records expire at
+     * @return The amount of partitions dropped from the records table
+     * @throws SQLException
+     */
+    public int dropExpired(Connection conn, long cutoff) throws SQLException {
+        if (!partitioned) {
+            return 0;
+        }
+
+        int dropped = 0;
+        for (String table : new String[] {"records", "extra"}) {
+            List<String> expired = new ArrayList<>();
+            for (Map.Entry<String, Long> entry : getBounds(conn, table).entrySet()) {
+                if (entry.getValue() != Long.MAX_VALUE && entry.getValue() <= cutoff + 1) {
+                    expired.add(entry.getKey());
+                }
+            }
+
+            if (expired.isEmpty()) {
+                continue;
+            }
+
+            execute(conn, String.format("ALTER TABLE %s%s DROP PARTITION %s;", tablePrefix, table, String.join(", ", expired)));
+
+            if (table.equals("records")) {
+                dropped = expired.size();
+            }
+        }
+
+        return dropped;
+    }
+
+    /**
+     * Builds the partitions of a table being partitioned. Everything before
+     * the current period goes to one partition, dropped once all of it has
+     * expired.
+     *
+     * @param today LocalDate in UTC
+     * @return String partition definitions
+     */
+    private String getInitialPartitions(LocalDate today) {
+        LocalDate from = start(today);
+
+        List<String> definitions = new ArrayList<>();
+        definitions.add(definition(HISTORY, epochSecond(from)));
+        for (int index = 0; index <= PERIODS_AHEAD; index++) {
+            LocalDate end = next(from);
+            definitions.add(definition(from.format(NAME_FORMAT), epochSecond(end)));
+            from = end;
+        }
+
+        definitions.add(definition(FUTURE, Long.MAX_VALUE));
+        return String.join(", ", definitions);
+    }
+
+    /**
+     * Returns the partitions of a table and their exclusive upper bounds,
+     * with {@link Long#MAX_VALUE} for the catch-all partition.
+     *
+     * @param conn Connection
+     * @param table String table name, without prefix
+     * @return Partition names and bounds in partition order, empty if the table isn't partitioned
+     * @throws SQLException
+     */
+    private Map<String, Long> getBounds(Connection conn, String table) throws SQLException {
+        Map<String, Long> bounds = new LinkedHashMap<>();
+        String sql = "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL "
+                + "ORDER BY PARTITION_ORDINAL_POSITION;";
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            statement.setString(1, tablePrefix + table);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    String description = rs.getString(2);
+                    bounds.put(rs.getString(1), description.equalsIgnoreCase("MAXVALUE") ? Long.MAX_VALUE : Long.parseLong(description));
+                }
+            }
+        }
+
+        return bounds;
+    }
+
+    /**
+     * Returns the first day of the period containing a day. Weeks start
+     * on Monday.
+     *
+     * @param date LocalDate in UTC
+     * @return LocalDate period start
+     */
+    private LocalDate start(LocalDate date) {
+        return period.equals("week") ? date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)) : date;
+    }
+
+    /**
+     * Returns the first day of the next period.
+     *
+     * @param start LocalDate period start
+     * @return LocalDate next period start
+     */
+    private LocalDate next(LocalDate start) {
+        return period.equals("week") ? start.plusWeeks(1) : start.plusDays(1);
+    }
+
+    private static long epochSecond(LocalDate date) {
+        return date.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+    }
+
+    private static String definition(String name, long bound) {
+        return "PARTITION " + name + " VALUES LESS THAN (" + (bound == Long.MAX_VALUE ? "MAXVALUE" : Long.toString(bound)) + ")";
+    }
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        Prism.getInstance().getLogger().debug("MySQL Partitioning: " + sql);
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            statement.execute();
+        }
+    }
+}
@@ -38,9 +38,11 @@ public class MySQLQuery extends SQLQuery {
      * Constructs a MySQL SQL query from a given QuerySession.
      *
      * @param session QuerySession
+     * @param dictionary MySQLDictionary for event, target and cause values
+     * @param partitioned Whether the records and extra tables are partitioned
      * @return SQLQuery
      */
-    public static SQLQuery from(QuerySession session) {
+    public static SQLQuery from(QuerySession session, MySQLDictionary dictionary, boolean partitioned) {
         Builder builder = SQLQuery.builder().select().from(tablePrefix + "records AS r");
         if (!session.hasFlag(Flag.NO_GROUP)) {
             builder.group(
@@ -51,16 +53,27 @@ public class MySQLQuery extends SQLQuery {
                     "DATE_FORMAT(created, '%Y-%m-%d')"
             ).col("COUNT(*) AS total").col("DATE_FORMAT(created, '%Y-%m-%d') as created");
         } else {
-            builder.col("*").leftJoin(tablePrefix + "extra AS e", "r.id = e.record_id");
+            // Records are pruned to the partitions matching the created
+            // conditions, the extra key then leads to a single partition
+            String join = partitioned ? "r.id = e.record_id AND r.created = e.record_created" : "r.id = e.record_id";
+            builder.col("*").col("r.id AS " + DataQueries.RecordId).leftJoin(tablePrefix + "extra AS e", join);
         }
 
         builder.hex(DataQueries.Player.toString(), DataQueries.WorldUuid.toString()).conditions(session.getQuery().getConditions());
-        builder.valueMutator(DataQueries.Player, value -> "UNHEX('" + TypeUtil.uuidStringToDbString(value) + "')");
-        builder.valueMutator(DataQueries.Location.then(DataQueries.WorldUuid), value -> "UNHEX('" + TypeUtil.uuidStringToDbString(value) + "')");
+        builder.valueMutator(DataQueries.Player, "UNHEX(?)", TypeUtil::uuidStringToDbString);
+        builder.valueMutator(DataQueries.Location.then(DataQueries.WorldUuid), "UNHEX(?)", TypeUtil::uuidStringToDbString);
+        builder.valueMutator(DataQueries.EventName, dictionary.getIdPlaceholder(), value -> value);
+        builder.valueMutator(DataQueries.Target, dictionary.getIdPlaceholder(), value -> value);
+        builder.valueMutator(DataQueries.Cause, dictionary.getIdPlaceholder(), value -> value);
 
         // Get Sorting order.
-        builder.order("created " + session.getSortBy().getString());
+        if (!session.hasFlag(Flag.NO_GROUP)) {
+            builder.order("created " + session.getSortBy().getString());
+        } else {
+            builder.order("r.created " + session.getSortBy().getString(), "r.id " + session.getSortBy().getString());
+            session.getQuery().getKeyset().ifPresent(keyset -> builder.after(keyset, session.getSortBy()));
+        }
 
-        return builder.build();
+        return builder.limit(session.getQuery().getLimit()).build();
     }
 }
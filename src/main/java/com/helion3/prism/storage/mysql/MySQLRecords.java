@@ -26,12 +26,12 @@ package com.helion3.prism.storage.mysql;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Date;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -42,7 +42,6 @@ import org.spongepowered.api.data.DataContainer;
 import org.spongepowered.api.data.DataQuery;
 import org.spongepowered.api.data.DataView;
 
-import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.helion3.prism.Prism;
 import com.helion3.prism.api.query.Query;
@@ -53,29 +52,69 @@ import com.helion3.prism.api.storage.StorageDeleteResult;
 import com.helion3.prism.api.storage.StorageWriteResult;
 import com.helion3.prism.util.DataQueries;
 import com.helion3.prism.util.DataUtil;
+import com.helion3.prism.util.PayloadCodec;
+import com.helion3.prism.util.SpatialKey;
 import com.helion3.prism.util.TypeUtil;
 
 public class MySQLRecords implements StorageAdapterRecords {
 
     private final String tablePrefix = Prism.getInstance().getConfig().getStorageCategory().getTablePrefix();
+    private final PayloadCodec payloadCodec = new PayloadCodec(
+            Prism.getInstance().getConfig().getStorageCategory().getExtraCompression(),
+            Prism.getInstance().getConfig().getStorageCategory().getExtraCompressionThreshold());
+    private final int rowsPerStatement = Math.max(Prism.getInstance().getConfig().getStorageCategory().getRowsPerStatement(), 1);
+    private final int fetchSize = Math.max(Prism.getInstance().getConfig().getStorageCategory().getQueryFetchSize(), 1);
+    private final MySQLStorageAdapter adapter;
+    private final MySQLDictionary dictionary;
+
+    public MySQLRecords(MySQLStorageAdapter adapter, MySQLDictionary dictionary) {
+        this.adapter = adapter;
+        this.dictionary = dictionary;
+    }
 
     @Override
     public StorageWriteResult write(List<DataContainer> containers) throws Exception {
+        // Records and their extra data are committed together
+        try (Connection conn = adapter.getConnection()) {
+            conn.setAutoCommit(false);
+
+            try {
+                for (int index = 0; index < containers.size(); index += rowsPerStatement) {
+                    writeRows(conn, containers.subList(index, Math.min(index + rowsPerStatement, containers.size())));
+                }
+
+                conn.commit();
+            } catch (Exception ex) {
+                rollback(conn, ex);
+                throw ex;
+            }
+        }
 
-        List<String> extraData = new ArrayList<>();
-        Map<Integer, String> extraDataMap = new HashMap<>();
+        return null;
+    }
 
-        String sql = String.format("INSERT INTO %srecords(%s, %s, %s, %s, %s, %s, %s, %s, %s)" +
-                        " values(?, ?, UNHEX(?), ?, ?, ?, ?, UNHEX(?), ?)",
+    /**
+     * Writes records and their extra data using one multi-row insert each.
+     *
+     * @param conn Connection
+     * @param containers List of records
+     * @throws SQLException
+     */
+    protected void writeRows(Connection conn, List<DataContainer> containers) throws SQLException {
+        List<PayloadCodec.Payload> extraData = new ArrayList<>(containers.size());
+        List<Integer> recordIds = new ArrayList<>(containers.size());
+        List<Long> createdTimes = new ArrayList<>(containers.size());
+
+        String sql = String.format("INSERT INTO %srecords(%s, %s, %s, %s, %s, %s, %s, %s, %s, %s) values%s",
                 tablePrefix,
                 DataQueries.Created, DataQueries.EventName, DataQueries.WorldUuid,
                 DataQueries.X, DataQueries.Y, DataQueries.Z,
-                DataQueries.Target, DataQueries.Player, DataQueries.Cause
+                DataQueries.Target, DataQueries.Player, DataQueries.Cause, DataQueries.Chunk,
+                repeatValues("(?, ?, UNHEX(?), ?, ?, ?, ?, UNHEX(?), ?, ?)", containers.size())
         );
 
-        try (Connection conn = MySQLStorageAdapter.getConnection(); PreparedStatement statement = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            conn.setAutoCommit(false);
-
+        try (PreparedStatement statement = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            int parameter = 1;
             for (DataContainer container : containers) {
                 DataView location = container.getView(DataQueries.Location).get();
 
@@ -85,142 +124,225 @@ public class MySQLRecords implements StorageAdapterRecords {
                     playerUUID = TypeUtil.uuidStringToDbString(player.get());
                 }
 
-                statement.setLong( 1, System.currentTimeMillis() / 1000L );
-                statement.setObject(2, container.getString(DataQueries.EventName).get());
-                statement.setString(3, TypeUtil.uuidStringToDbString(location.getString(DataQueries.WorldUuid).get()));
-                statement.setInt(4, location.getInt(DataQueries.X).get());
-                statement.setInt(5, location.getInt(DataQueries.Y).get());
-                statement.setInt(6, location.getInt(DataQueries.Z).get());
-                statement.setString(7, container.getString(DataQueries.Target).orElse(null));
-                statement.setString(8, playerUUID);
-                statement.setString(9, container.getString(DataQueries.Cause).orElse(null));
-                statement.addBatch();
+                // Spilled records are written well after they were created
+                Date created = container.get(DataQueries.Created).filter(Date.class::isInstance).map(Date.class::cast).orElseGet(Date::new);
+
+                createdTimes.add(created.getTime() / 1000L);
+                statement.setLong(parameter++, created.getTime() / 1000L);
+                statement.setInt(parameter++, dictionary.getOrCreateId(container.getString(DataQueries.EventName).get()));
+                statement.setString(parameter++, TypeUtil.uuidStringToDbString(location.getString(DataQueries.WorldUuid).get()));
+                statement.setInt(parameter++, location.getInt(DataQueries.X).get());
+                statement.setInt(parameter++, location.getInt(DataQueries.Y).get());
+                statement.setInt(parameter++, location.getInt(DataQueries.Z).get());
+                statement.setObject(parameter++, dictionary.getOrCreateId(container.getString(DataQueries.Target).orElse(null)), Types.INTEGER);
+                statement.setString(parameter++, playerUUID);
+                statement.setObject(parameter++, dictionary.getOrCreateId(container.getString(DataQueries.Cause).orElse(null)), Types.INTEGER);
+                statement.setLong(parameter++, SpatialKey.of(location.getInt(DataQueries.X).get(), location.getInt(DataQueries.Z).get()));
 
                 // Remove some data not needed for extra storage
-                container.remove(DataQueries.Location);
-                container.remove(DataQueries.EventName);
-                container.remove(DataQueries.Player);
-                container.remove(DataQueries.Cause);
-                container.remove(DataQueries.Target);
-
-                extraData.add(DataUtil.jsonFromDataView(container).toString());
+                // Work on a copy so a failed write can be retried
+                DataContainer extra = container.copy();
+                extra.remove(DataQueries.Location);
+                extra.remove(DataQueries.EventName);
+                extra.remove(DataQueries.Player);
+                extra.remove(DataQueries.Cause);
+                extra.remove(DataQueries.Target);
+                extra.remove(DataQueries.Created);
+
+                extraData.add(payloadCodec.encode(extra));
             }
 
-            statement.executeBatch();
-            ResultSet keys = statement.getGeneratedKeys();
-            conn.commit();
+            statement.executeUpdate();
 
-            int i = 0;
-            while (keys.next()) {
-                extraDataMap.put(keys.getInt(1), extraData.get(i));
-                i++;
-            }
-
-            if (containers.size() != extraData.size()) {
-                Prism.getInstance().getLogger().debug("Container has more information than we have extra entries for.");
+            // Keys of a multi-row insert are returned in row order
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                while (keys.next()) {
+                    recordIds.add(keys.getInt(1));
+                }
             }
+        }
 
-            writeExtraData(extraDataMap);
+        if (recordIds.size() != extraData.size()) {
+            throw new SQLException(String.format("Expected %d generated keys but received %d", extraData.size(), recordIds.size()));
         }
 
-        return null;
+        writeExtraData(conn, recordIds, createdTimes, extraData);
     }
 
-    protected StorageWriteResult writeExtraData(Map<Integer, String> extraDataMap) throws Exception {
-        if (extraDataMap.isEmpty()) {
-            throw new IllegalArgumentException("Extra data map must not be empty.");
-        }
+    /**
+     * Writes extra data for records using one multi-row insert.
+     *
+     * @param conn Connection
+     * @param recordIds List of record ids
+     * @param createdTimes List of record created times, in the same order as the record ids
+     * @param extraData List of extra data, in the same order as the record ids
+     * @throws SQLException
+     */
+    protected void writeExtraData(Connection conn, List<Integer> recordIds, List<Long> createdTimes, List<PayloadCodec.Payload> extraData) throws SQLException {
+        // Partitioned extra rows are placed by the created time of their record
+        boolean recordCreated = adapter.getPartitions().hasRecordCreated();
+        String sql = recordCreated
+                ? "INSERT INTO " + tablePrefix + "extra(record_id, record_created, codec, payload) values" + repeatValues("(?, ?, ?, ?)", recordIds.size())
+                : "INSERT INTO " + tablePrefix + "extra(record_id, codec, payload) values" + repeatValues("(?, ?, ?)", recordIds.size());
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            int parameter = 1;
+            for (int index = 0; index < recordIds.size(); index++) {
+                statement.setInt(parameter++, recordIds.get(index));
+                if (recordCreated) {
+                    statement.setLong(parameter++, createdTimes.get(index));
+                }
 
-        String sql = "INSERT INTO " + tablePrefix + "extra(record_id, json) values(?, ?)";
-        try (Connection conn = MySQLStorageAdapter.getConnection(); PreparedStatement statement = conn.prepareStatement(sql)) {
-            conn.setAutoCommit(false);
+                statement.setInt(parameter++, extraData.get(index).getCodec());
+                statement.setBytes(parameter++, extraData.get(index).getBytes());
+            }
+
+            statement.executeUpdate();
+        }
+    }
 
-            for (Entry<Integer, String> data : extraDataMap.entrySet()) {
-                statement.setInt(1, data.getKey());
-                statement.setString(2, data.getValue());
-                statement.addBatch();
+    /**
+     * Joins a values group for a multi-row insert.
+     *
+     * @param values Values group
+     * @param rows Amount of rows
+     * @return Joined values groups
+     */
+    private static String repeatValues(String values, int rows) {
+        StringBuilder builder = new StringBuilder((values.length() + 2) * rows);
+        for (int row = 0; row < rows; row++) {
+            if (row > 0) {
+                builder.append(", ");
             }
 
-            statement.executeBatch();
-            conn.commit();
+            builder.append(values);
         }
 
-        return null;
+        return builder.toString();
+    }
+
+    /**
+     * Rolls back a failed write, keeping the original exception.
+     *
+     * @param conn Connection
+     * @param ex Exception which caused the rollback
+     */
+    private static void rollback(Connection conn, Exception ex) {
+        try {
+            conn.rollback();
+        } catch (SQLException rollbackEx) {
+            ex.addSuppressed(rollbackEx);
+        }
     }
 
     @Override
     public CompletableFuture<List<Result>> query(QuerySession session, boolean translate) throws Exception {
-        // Prepare results
         List<Result> results = new ArrayList<>();
-        CompletableFuture<List<Result>> future = new CompletableFuture<>();
-        List<UUID> uuidsPendingLookup = new ArrayList<>();
+        stream(session, translate, fetchSize, chunk -> {
+            results.addAll(chunk);
+            return true;
+        });
+        return CompletableFuture.completedFuture(results);
+    }
 
+    @Override
+    public void stream(QuerySession session, boolean translate, int chunkSize, ResultConsumer consumer) throws Exception {
         // Build query
-        SQLQuery query = MySQLQuery.from(session);
-        Prism.getInstance().getLogger().debug("MySQL Query: " + query);
-
-        try (Connection conn = MySQLStorageAdapter.getConnection(); PreparedStatement statement = conn.prepareStatement(query.toString()); ResultSet rs = statement.executeQuery()) {
-            while (rs.next()) {
-                // Build our result object
-                Result result = Result.from(rs.getString(DataQueries.EventName.toString()), !session.hasFlag(Flag.NO_GROUP));
-
-                // Restore the data container
-                DataContainer data = DataContainer.createNew();
-                data.set(DataQueries.EventName, rs.getString(DataQueries.EventName.toString()));
-                data.set(DataQueries.Created, rs.getLong(DataQueries.Created.toString()));
-
-                String target = rs.getString(DataQueries.Target.toString());
-                data.set(DataQueries.Target, target != null ? target : "");
-
-                if (!session.hasFlag(Flag.NO_GROUP)) {
-                    data.set(DataQueries.Count, rs.getInt("total"));
-                } else {
-                    DataContainer loc = DataContainer.createNew();
-                    loc.set(DataQueries.X, rs.getInt(DataQueries.X.toString()));
-                    loc.set(DataQueries.Y, rs.getInt(DataQueries.Y.toString()));
-                    loc.set(DataQueries.Z, rs.getInt(DataQueries.Z.toString()));
-                    loc.set(DataQueries.WorldUuid, TypeUtil.uuidStringFromDbString(rs.getString("worldUuidHexed")));
-                    data.set(DataQueries.Location, loc);
-
-                    if (rs.getString("json") != null) {
-                        try {
-                            JsonObject json = new JsonParser().parse(rs.getString("json")).getAsJsonObject();
-                            DataView extra = DataUtil.dataViewFromJson(json);
-
-                            for (DataQuery key : extra.getKeys(false)) {
-                                data.set(key, extra.get(key).get());
-                            }
-                        } catch (Exception ex) {
-                            Prism.getInstance().getLogger().error("Failed to deserialize {} at {}", target, loc.toString());
-                            throw ex;
+        SQLQuery query = MySQLQuery.from(session, dictionary, adapter.getPartitions().isPartitioned());
+        Prism.getInstance().getLogger().debug("MySQL Query: " + query + " " + query.getParameters());
+
+        try (Connection conn = adapter.getConnection(); PreparedStatement statement = query.prepare(conn)) {
+            // Read through a server-side cursor rather than loading every row
+            statement.setFetchSize(chunkSize);
+
+            try (ResultSet rs = statement.executeQuery()) {
+                List<Result> results = new ArrayList<>(chunkSize);
+                List<UUID> uuidsPendingLookup = new ArrayList<>();
+                while (rs.next()) {
+                    results.add(readResult(session, rs, translate ? uuidsPendingLookup : null));
+
+                    if (results.size() >= chunkSize) {
+                        if (!consumer.accept(DataUtil.translateUuidsToNamesAndWait(results, uuidsPendingLookup))) {
+                            return;
                         }
+
+                        results = new ArrayList<>(chunkSize);
+                        uuidsPendingLookup = new ArrayList<>();
                     }
                 }
 
-                // Determine the final name of the event source
-                if (rs.getString("playerHexed") != null && !rs.getString("playerHexed").isEmpty()) {
-                    UUID uuid = TypeUtil.uuidFromDbString(rs.getString("playerHexed"));
-                    data.set(DataQueries.Cause, uuid.toString());
+                if (!results.isEmpty()) {
+                    consumer.accept(DataUtil.translateUuidsToNamesAndWait(results, uuidsPendingLookup));
+                }
+            }
+        }
+    }
 
-                    if (translate) {
-                        uuidsPendingLookup.add(uuid);
+    /**
+     * Builds a result from the current row.
+     *
+     * @param session QuerySession
+     * @param rs ResultSet positioned on the row
+     * @param uuidsPendingLookup Collects player UUIDs to translate, or null
+     * @return Result
+     * @throws Exception
+     */
+    private Result readResult(QuerySession session, ResultSet rs, List<UUID> uuidsPendingLookup) throws Exception {
+        String eventName = dictionary.getValue(rs.getInt(DataQueries.EventName.toString()));
+
+        // Build our result object
+        Result result = Result.from(eventName, !session.hasFlag(Flag.NO_GROUP));
+
+        // Restore the data container
+        DataContainer data = DataContainer.createNew();
+        data.set(DataQueries.EventName, eventName);
+        data.set(DataQueries.Created, rs.getLong(DataQueries.Created.toString()));
+
+        String target = dictionary.getValue(rs.getInt(DataQueries.Target.toString()));
+        data.set(DataQueries.Target, target != null ? target : "");
+
+        if (!session.hasFlag(Flag.NO_GROUP)) {
+            data.set(DataQueries.Count, rs.getInt("total"));
+        } else {
+            data.set(DataQueries.RecordId, rs.getLong(DataQueries.RecordId.toString()));
+
+            DataContainer loc = DataContainer.createNew();
+            loc.set(DataQueries.X, rs.getInt(DataQueries.X.toString()));
+            loc.set(DataQueries.Y, rs.getInt(DataQueries.Y.toString()));
+            loc.set(DataQueries.Z, rs.getInt(DataQueries.Z.toString()));
+            loc.set(DataQueries.WorldUuid, TypeUtil.uuidStringFromDbString(rs.getString("worldUuidHexed")));
+            data.set(DataQueries.Location, loc);
+
+            byte[] payload = rs.getBytes("payload");
+            String json = rs.getString("json");
+            if (payload != null || json != null) {
+                try {
+                    // Rows written before the binary format only have json
+                    DataView extra = payload != null ? PayloadCodec.decode(rs.getInt("codec"), payload) : DataUtil.dataViewFromJson(new JsonParser().parse(json).getAsJsonObject());
+
+                    for (DataQuery key : extra.getKeys(false)) {
+                        data.set(key, extra.get(key).get());
                     }
-                } else {
-                    data.set(DataQueries.Cause, rs.getString(DataQueries.Cause.toString()));
+                } catch (Exception ex) {
+                    Prism.getInstance().getLogger().error("Failed to deserialize {} at {}", target, loc.toString());
+                    throw ex;
                 }
-
-                result.data = data;
-                results.add(result);
             }
+        }
+
+        // Determine the final name of the event source
+        if (rs.getString("playerHexed") != null && !rs.getString("playerHexed").isEmpty()) {
+            UUID uuid = TypeUtil.uuidFromDbString(rs.getString("playerHexed"));
+            data.set(DataQueries.Cause, uuid.toString());
 
-            if (translate && !uuidsPendingLookup.isEmpty()) {
-                DataUtil.translateUuidsToNames(results, uuidsPendingLookup).thenAccept(future::complete);
-            } else {
-                future.complete(results);
+            if (uuidsPendingLookup != null) {
+                uuidsPendingLookup.add(uuid);
             }
+        } else {
+            data.set(DataQueries.Cause, dictionary.getValue(rs.getInt(DataQueries.Cause.toString())));
         }
 
-        return future;
+        result.data = data;
+        return result;
     }
 
     @Override
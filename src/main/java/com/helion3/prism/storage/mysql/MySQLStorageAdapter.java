@@ -25,8 +25,11 @@ package com.helion3.prism.storage.mysql;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import com.helion3.prism.Prism;
 import com.helion3.prism.api.storage.StorageAdapter;
@@ -34,29 +37,47 @@ import com.helion3.prism.api.storage.StorageAdapterRecords;
 import com.helion3.prism.api.storage.StorageAdapterSettings;
 import com.helion3.prism.util.DataQueries;
 import com.helion3.prism.util.DateUtil;
+import com.helion3.prism.util.SpatialKey;
+import com.helion3.prism.configuration.category.ShardCategory;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import org.spongepowered.api.scheduler.Task;
 
 public class MySQLStorageAdapter implements StorageAdapter {
 
+    private static final int SCHEMA_VERSION = 6;
+    private static final int MIGRATION_BATCH_SIZE = 100000;
+
     private final String expiration = Prism.getInstance().getConfig().getStorageCategory().getExpireRecords();
     private final String tablePrefix = Prism.getInstance().getConfig().getStorageCategory().getTablePrefix();
     private final int purgeBatchLimit = Prism.getInstance().getConfig().getStorageCategory().getPurgeBatchLimit();
+    private final MySQLDictionary dictionary;
+    private final MySQLPartitions partitions;
     private final StorageAdapterRecords records;
-    private static HikariDataSource db;
+    private final ShardCategory connection;
+    private HikariDataSource db;
+    private Task maintenance;
     private final String dns;
 
     /**
-     * Create a new instance of the H2 storage adapter.
+     * Create a new instance of the MySQL storage adapter.
      */
     public MySQLStorageAdapter() {
-        records = new MySQLRecords();
+        this(ShardCategory.of(Prism.getInstance().getConfig().getStorageCategory()));
+    }
+
+    /**
+     * Create a new instance of the MySQL storage adapter for a database.
+     *
+     * @param connection ShardCategory describing the database
+     */
+    public MySQLStorageAdapter(ShardCategory connection) {
+        this.connection = connection;
+        dictionary = new MySQLDictionary(this, tablePrefix);
+        partitions = new MySQLPartitions(this, tablePrefix, Prism.getInstance().getConfig().getStorageCategory().getPartitionPeriod());
+        records = new MySQLRecords(this, dictionary);
 
-        dns = String.format("jdbc:mysql://%s/%s",
-                Prism.getInstance().getConfig().getStorageCategory().getAddress(),
-                Prism.getInstance().getConfig().getStorageCategory().getDatabase()
-        );
+        dns = String.format("jdbc:mysql://%s/%s", connection.getAddress(), connection.getDatabase());
     }
 
     /**
@@ -65,17 +86,26 @@ public class MySQLStorageAdapter implements StorageAdapter {
      * @return Connection
      * @throws SQLException
      */
-    protected static Connection getConnection() throws SQLException {
+    protected Connection getConnection() throws SQLException {
         return db.getConnection();
     }
 
+    /**
+     * Get the partitions of the records and extra tables.
+     *
+     * @return MySQLPartitions
+     */
+    protected MySQLPartitions getPartitions() {
+        return partitions;
+    }
+
     @Override
     public boolean connect() throws Exception {
         try {
             // Get data source
             HikariConfig config = new HikariConfig();
             config.setJdbcUrl(dns);
-            String mysqlDriver = Prism.getInstance().getConfig().getStorageCategory().getMysqlDriver();
+            String mysqlDriver = connection.getMysqlDriver();
             if (mysqlDriver.equalsIgnoreCase("MySQL")) {
                 config.setDriverClassName("com.mysql.cj.jdbc.Driver");
             } else if (mysqlDriver.equalsIgnoreCase("MariaDB")) {
@@ -83,18 +113,46 @@ public class MySQLStorageAdapter implements StorageAdapter {
             } else {
                 Prism.getInstance().getLogger().error("Invalid input for MySQL Driver configuration: " + mysqlDriver);
             }
-            config.setUsername(Prism.getInstance().getConfig().getStorageCategory().getUsername());
-            config.setPassword(Prism.getInstance().getConfig().getStorageCategory().getPassword());
+            config.setUsername(connection.getUsername());
+            config.setPassword(connection.getPassword());
             config.setMaximumPoolSize(Prism.getInstance().getConfig().getStorageCategory().getMaximumPoolSize());
             config.setMinimumIdle(Prism.getInstance().getConfig().getStorageCategory().getMinimumIdle());
+            config.addDataSourceProperty("rewriteBatchedStatements", "true");
+
+            // Lookups are sent with placeholders, reuse their prepared statements
+            config.addDataSourceProperty("cachePrepStmts", "true");
+            config.addDataSourceProperty("prepStmtCacheSize", "250");
+            config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+            config.addDataSourceProperty("useServerPrepStmts", "true");
+
+            // Lets a fetch size stream results through a server-side cursor
+            config.addDataSourceProperty("useCursorFetch", "true");
 
             db = new HikariDataSource(config);
 
             // Create table if needed
             createTables();
 
-            // Purge async
-            if (Prism.getInstance().getConfig().getStorageCategory().isShouldExpire()) {
+            try (Connection conn = getConnection()) {
+                dictionary.load(conn);
+                partitions.load(conn);
+            }
+
+            if (partitions.isEnabled() && !partitions.isPartitioned()) {
+                // Existing tables are rebuilt, records older than that go to the history partition
+                Task.builder()
+                    .async()
+                    .name("PrismMySQLPartitioning")
+                    .execute(this::partitionTables)
+                    .submit(Prism.getInstance().getPluginContainer());
+            } else if (partitions.isPartitioned()) {
+                if (!partitions.isEnabled()) {
+                    Prism.getInstance().getLogger().warn("Records are partitioned but partition-period is none, new partitions won't be created");
+                }
+
+                startMaintenance();
+            } else if (Prism.getInstance().getConfig().getStorageCategory().isShouldExpire()) {
+                // Purge async
                 Task.builder()
                     .async()
                     .name("PrismMySQLPurge")
@@ -116,24 +174,28 @@ public class MySQLStorageAdapter implements StorageAdapter {
      */
     protected void createTables() throws SQLException {
         try (Connection conn = getConnection()) {
+            boolean existing = getColumnType(conn, "id").isPresent();
+
             String records = "CREATE TABLE IF NOT EXISTS "
                     + tablePrefix + "records ("
                     + "id int(10) unsigned NOT NULL AUTO_INCREMENT, "
                     + DataQueries.Created + " int(10) unsigned NOT NULL, "
-                    + DataQueries.EventName + " varchar(16) NOT NULL, "
+                    + DataQueries.EventName + " int(10) unsigned NOT NULL, "
                     + DataQueries.WorldUuid + " binary(16) NOT NULL, "
                     + DataQueries.X + " int(10) NOT NULL, "
                     + DataQueries.Y + " smallint(5) NOT NULL, "
                     + DataQueries.Z + " int(10) NOT NULL, "
-                    + DataQueries.Target + " varchar(255), "
+                    + DataQueries.Target + " int(10) unsigned, "
                     + DataQueries.Player + " binary(16), "
-                    + DataQueries.Cause + " varchar(55), "
+                    + DataQueries.Cause + " int(10) unsigned, "
+                    + DataQueries.Chunk + " bigint NOT NULL, "
                     + "PRIMARY KEY (`id`), "
                     + "KEY  `location` (`"+ DataQueries.WorldUuid
                         + "`, `" + DataQueries.X
                         + "`, `" + DataQueries.Z
                         + "`, `" + DataQueries.Y
                     + "`), "
+                    + "KEY `chunk` (`" + DataQueries.WorldUuid + "`, `" + DataQueries.Chunk + "`), "
                     + "KEY `created` (`created`)"
                     + ") ENGINE=InnoDB DEFAULT CHARACTER SET utf8 " +
                     "  DEFAULT COLLATE utf8_general_ci;";
@@ -144,6 +206,8 @@ public class MySQLStorageAdapter implements StorageAdapter {
                     + "id int(10) unsigned NOT NULL AUTO_INCREMENT, "
                     + "record_id int(10) unsigned NOT NULL, "
                     + "json TEXT, "
+                    + "codec tinyint unsigned NOT NULL DEFAULT 0, "
+                    + "payload mediumblob, "
                     + "PRIMARY KEY (`id`), "
                     + "KEY `record_id` (`record_id`), "
                     + "CONSTRAINT " + tablePrefix + "extra_ibfk_1 "
@@ -154,15 +218,256 @@ public class MySQLStorageAdapter implements StorageAdapter {
                     + "DEFAULT COLLATE utf8_general_ci;";
             conn.prepareStatement(extra).execute();
 
-            if (Prism.getInstance().getConfig().getGeneralCategory().getSchemaVersion() == 1) {
-                // Expand target: 55 -> 255
-                conn.prepareStatement(String.format("ALTER TABLE %srecords MODIFY %s varchar(255);",
-                        tablePrefix,
-                        DataQueries.Target
+            String dictionary = "CREATE TABLE IF NOT EXISTS "
+                    + tablePrefix + "dictionary ("
+                    + "id int(10) unsigned NOT NULL AUTO_INCREMENT, "
+                    + "value varchar(255) NOT NULL, "
+                    + "PRIMARY KEY (`id`), "
+                    + "UNIQUE KEY `value` (`value`)"
+                    + ") ENGINE=InnoDB DEFAULT CHARACTER SET utf8 "
+                    + "DEFAULT COLLATE utf8_bin;";
+            conn.prepareStatement(dictionary).execute();
+
+            String meta = "CREATE TABLE IF NOT EXISTS "
+                    + tablePrefix + "meta ("
+                    + "meta_key varchar(64) NOT NULL, "
+                    + "meta_value varchar(255) NOT NULL, "
+                    + "PRIMARY KEY (`meta_key`)"
+                    + ") ENGINE=InnoDB DEFAULT CHARACTER SET utf8 "
+                    + "DEFAULT COLLATE utf8_general_ci;";
+            conn.prepareStatement(meta).execute();
+
+            int version = getSchemaVersion(conn, existing);
+
+            if (version == 1) {
+                // Expand target: 55 -> 255, it's a dictionary id from version 5
+                if (getColumnType(conn, DataQueries.Target.toString()).filter("varchar"::equalsIgnoreCase).isPresent()) {
+                    conn.prepareStatement(String.format("ALTER TABLE %srecords MODIFY %s varchar(255);",
+                            tablePrefix,
+                            DataQueries.Target
+                    )).execute();
+                }
+
+                version = setSchemaVersion(conn, 2);
+            }
+
+            if (version == 2) {
+                // Binary extra data, json is kept for existing rows
+                if (!getColumnType(conn, "extra", "payload").isPresent()) {
+                    conn.prepareStatement(String.format("ALTER TABLE %sextra ADD COLUMN payload mediumblob;",
+                            tablePrefix
+                    )).execute();
+                }
+
+                version = setSchemaVersion(conn, 3);
+            }
+
+            if (version == 3) {
+                // Codec of the payload, rows may be compressed
+                if (!getColumnType(conn, "extra", "codec").isPresent()) {
+                    conn.prepareStatement(String.format("ALTER TABLE %sextra ADD COLUMN codec tinyint unsigned NOT NULL DEFAULT 0 AFTER json;",
+                            tablePrefix
+                    )).execute();
+                }
+
+                version = setSchemaVersion(conn, 4);
+            }
+
+            if (version == 4) {
+                // Event, target and cause reference the dictionary
+                if (!getColumnType(conn, DataQueries.EventName.toString()).filter("int"::equalsIgnoreCase).isPresent()) {
+                    Prism.getInstance().getLogger().info("Moving event, target and cause values to the dictionary, this may take a while...");
+                    encodeDictionaryColumns(conn);
+                }
+
+                version = setSchemaVersion(conn, 5);
+            }
+
+            if (version == 5) {
+                // Indexed spatial key for radius lookups
+                if (!getColumnType(conn, DataQueries.Chunk.toString()).isPresent()) {
+                    Prism.getInstance().getLogger().info("Adding spatial keys to existing records, this may take a while...");
+                    conn.prepareStatement(String.format("ALTER TABLE %srecords ADD COLUMN %s bigint NOT NULL DEFAULT 0;",
+                            tablePrefix, DataQueries.Chunk
+                    )).execute();
+
+                    long[] ids = getIdRange(conn, "records");
+                    String sql = String.format("UPDATE %srecords SET %s = %s WHERE id >= ? AND id < ?;",
+                            tablePrefix, DataQueries.Chunk, SpatialKey.sqlExpression(DataQueries.X.toString(), DataQueries.Z.toString()));
+                    updateInBatches(conn, sql, ids[0], ids[1], "Added spatial keys");
+
+                    conn.prepareStatement(String.format("ALTER TABLE %srecords ADD KEY `chunk` (`%s`, `%s`);",
+                            tablePrefix, DataQueries.WorldUuid, DataQueries.Chunk
+                    )).execute();
+                }
+
+                version = setSchemaVersion(conn, 6);
+            }
+        }
+    }
+
+    /**
+     * Returns the schema version of this database. Each database keeps its
+     * own, so shards are migrated independently. A database which had
+     * tables before its version was stored starts from the first version,
+     * its migrations check what has already been applied.
+     *
+     * @param conn Connection
+     * @param existing Whether the records table existed already
+     * @return Schema version
+     * @throws SQLException
+     */
+    private int getSchemaVersion(Connection conn, boolean existing) throws SQLException {
+        String sql = "SELECT meta_value FROM " + tablePrefix + "meta WHERE meta_key = 'schema-version';";
+        try (PreparedStatement statement = conn.prepareStatement(sql); ResultSet rs = statement.executeQuery()) {
+            if (rs.next()) {
+                return Integer.parseInt(rs.getString(1));
+            }
+        }
+
+        return setSchemaVersion(conn, existing ? 1 : SCHEMA_VERSION);
+    }
+
+    /**
+     * Stores the schema version of this database.
+     *
+     * @param conn Connection
+     * @param version Schema version
+     * @return Schema version
+     * @throws SQLException
+     */
+    private int setSchemaVersion(Connection conn, int version) throws SQLException {
+        String sql = "INSERT INTO " + tablePrefix + "meta(meta_key, meta_value) VALUES ('schema-version', ?) "
+                + "ON DUPLICATE KEY UPDATE meta_value = VALUES(meta_value);";
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            statement.setString(1, Integer.toString(version));
+            statement.executeUpdate();
+        }
+
+        return version;
+    }
+
+    /**
+     * Returns the data type of a records column, used by migrations which
+     * the table may have been created with already.
+     *
+     * @param conn Connection
+     * @param column String column name
+     * @return Data type, or empty if the column doesn't exist
+     * @throws SQLException
+     */
+    private Optional<String> getColumnType(Connection conn, String column) throws SQLException {
+        return getColumnType(conn, "records", column);
+    }
+
+    /**
+     * Returns the data type of a column.
+     *
+     * @param conn Connection
+     * @param table String table name, without prefix
+     * @param column String column name
+     * @return Data type, or empty if the column doesn't exist
+     * @throws SQLException
+     */
+    protected Optional<String> getColumnType(Connection conn, String table, String column) throws SQLException {
+        String sql = "SELECT DATA_TYPE FROM information_schema.COLUMNS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?;";
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            statement.setString(1, tablePrefix + table);
+            statement.setString(2, column);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? Optional.of(rs.getString(1)) : Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Replaces the event, target and cause strings of existing records
+     * with dictionary ids.
+     *
+     * @param conn Connection
+     * @throws SQLException
+     */
+    private void encodeDictionaryColumns(Connection conn) throws SQLException {
+        String[] columns = {DataQueries.EventName.toString(), DataQueries.Target.toString(), DataQueries.Cause.toString()};
+
+        // A previous attempt may have stopped after dropping the strings
+        if (getColumnType(conn, columns[0]).isPresent()) {
+            long[] ids = getIdRange(conn, "records");
+            long minimumId = ids[0];
+            long maximumId = ids[1];
+
+            // Values are compared case-sensitively, as the dictionary does
+            for (String column : columns) {
+                String sql = String.format("INSERT IGNORE INTO %sdictionary(value) SELECT DISTINCT %s COLLATE utf8_bin FROM %srecords WHERE %2$s IS NOT NULL AND id >= ? AND id < ?;",
+                        tablePrefix, column, tablePrefix);
+                updateInBatches(conn, sql, minimumId, maximumId, "Collected " + column + " values");
+            }
+
+            // A previous attempt may have stopped after adding them
+            if (!getColumnType(conn, columns[0] + "_id").isPresent()) {
+                conn.prepareStatement(String.format("ALTER TABLE %srecords ADD COLUMN %s_id int(10) unsigned, ADD COLUMN %s_id int(10) unsigned, ADD COLUMN %s_id int(10) unsigned;",
+                        tablePrefix, columns[0], columns[1], columns[2]
                 )).execute();
+            }
+
+            String sql = String.format("UPDATE %srecords AS r "
+                            + "LEFT JOIN %sdictionary AS d0 ON d0.value = r.%s COLLATE utf8_bin "
+                            + "LEFT JOIN %2$sdictionary AS d1 ON d1.value = r.%s COLLATE utf8_bin "
+                            + "LEFT JOIN %2$sdictionary AS d2 ON d2.value = r.%s COLLATE utf8_bin "
+                            + "SET r.%3$s_id = d0.id, r.%4$s_id = d1.id, r.%5$s_id = d2.id "
+                            + "WHERE r.id >= ? AND r.id < ?;",
+                    tablePrefix, tablePrefix, columns[0], columns[1], columns[2]);
+            updateInBatches(conn, sql, minimumId, maximumId, "Encoded records");
+
+            conn.prepareStatement(String.format("ALTER TABLE %srecords DROP COLUMN %s, DROP COLUMN %s, DROP COLUMN %s;",
+                    tablePrefix, columns[0], columns[1], columns[2]
+            )).execute();
+        }
+
+        conn.prepareStatement(String.format("ALTER TABLE %srecords CHANGE %s_id %2$s int(10) unsigned NOT NULL AFTER %s, CHANGE %s_id %4$s int(10) unsigned AFTER %s, CHANGE %s_id %6$s int(10) unsigned AFTER %s;",
+                tablePrefix,
+                columns[0], DataQueries.Created,
+                columns[1], DataQueries.Z,
+                columns[2], DataQueries.Player
+        )).execute();
+    }
 
-                Prism.getInstance().getConfig().getGeneralCategory().setSchemaVersion(2);
-                Prism.getInstance().getConfiguration().saveConfiguration();
+    /**
+     * Returns the lowest and highest id of a table.
+     *
+     * @param conn Connection
+     * @param table String table name, without prefix
+     * @return Lowest and highest id, both 0 if the table is empty
+     * @throws SQLException
+     */
+    protected long[] getIdRange(Connection conn, String table) throws SQLException {
+        try (PreparedStatement statement = conn.prepareStatement("SELECT MIN(id), MAX(id) FROM " + tablePrefix + table + ";");
+                ResultSet rs = statement.executeQuery()) {
+            rs.next();
+            return new long[] {rs.getLong(1), rs.getLong(2)};
+        }
+    }
+
+    /**
+     * Runs a statement over consecutive id ranges of a table, so each
+     * batch commits on its own instead of one huge transaction.
+     *
+     * @param conn Connection
+     * @param sql Statement taking the first id and the id after the range
+     * @param minimumId Lowest id
+     * @param maximumId Highest id
+     * @param progress Progress message
+     * @throws SQLException
+     */
+    protected void updateInBatches(Connection conn, String sql, long minimumId, long maximumId, String progress) throws SQLException {
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            for (long id = minimumId; id <= maximumId; id += MIGRATION_BATCH_SIZE) {
+                statement.setLong(1, id);
+                statement.setLong(2, id + MIGRATION_BATCH_SIZE);
+                statement.executeUpdate();
+
+                Prism.getInstance().getLogger().info("{} up to id {} of {}", progress, Math.min(id + MIGRATION_BATCH_SIZE - 1, maximumId), maximumId);
             }
         }
     }
@@ -191,28 +496,118 @@ public class MySQLStorageAdapter implements StorageAdapter {
     }
 
     /**
-     * Removes expires records from the database.
+     * Partitions the records and extra tables, then starts maintaining
+     * them. Writes wait while a table is being rebuilt, they're queued
+     * or retried meanwhile.
      *
-     * @return The amount of rows removed.
-     * @throws Exception
+     * If partitioning fails, expired records are purged as usual and the
+     * conversion continues where it stopped on the next start.
      */
-    protected int purgeRecords() throws Exception {
+    protected void partitionTables() {
+        Prism.getInstance().getLogger().info("Partitioning MySQL records by {} in the background, this may take a while...",
+                Prism.getInstance().getConfig().getStorageCategory().getPartitionPeriod());
+
+        try (Connection conn = getConnection()) {
+            partitions.partition(conn);
+        } catch (Exception ex) {
+            Prism.getInstance().getLogger().error("Encountered an error while partitioning MySQL records, it'll be continued on the next start", ex);
+
+            if (Prism.getInstance().getConfig().getStorageCategory().isShouldExpire()) {
+                purge();
+            }
+
+            return;
+        }
+
+        Prism.getInstance().getLogger().info("Finished partitioning MySQL records");
+        startMaintenance();
+    }
+
+    /**
+     * Schedules adding partitions ahead of time and dropping expired ones.
+     */
+    private synchronized void startMaintenance() {
+        if (db.isClosed()) {
+            return;
+        }
+
+        maintenance = Task.builder()
+            .async()
+            .name("PrismMySQLPartitions")
+            .interval(1, TimeUnit.HOURS)
+            .execute(this::maintainPartitions)
+            .submit(Prism.getInstance().getPluginContainer());
+    }
+
+    /**
+     * Adds upcoming partitions and drops expired ones.
+     */
+    protected void maintainPartitions() {
+        try (Connection conn = getConnection()) {
+            int created = partitions.createAhead(conn);
+            if (created > 0) {
+                Prism.getInstance().getLogger().info("Added {} MySQL partitions", created);
+            }
+
+            if (Prism.getInstance().getConfig().getStorageCategory().isShouldExpire()) {
+                int dropped = partitions.dropExpired(conn, getExpirationTime());
+                if (dropped > 0) {
+                    Prism.getInstance().getLogger().info("Dropped {} expired MySQL partitions", dropped);
+                }
+            }
+        } catch (Exception ex) {
+            Prism.getInstance().getLogger().error("Encountered an error while maintaining MySQL partitions", ex);
+        }
+    }
+
+    /**
+     * Returns the time records created at or before have expired.
+     *
+     * @return Epoch second
+     */
+    private long getExpirationTime() {
         Date date = DateUtil.parseTimeStringToDate(expiration, false);
         if (date == null) {
             throw new IllegalArgumentException("Failed to parse expiration");
         }
 
+        return date.getTime() / 1000;
+    }
+
+    /**
+     * Removes expires records from the database.
+     *
+     * @return The amount of rows removed.
+     * @throws Exception
+     */
+    protected int purgeRecords() throws Exception {
+        long expirationTime = getExpirationTime();
+
         if (purgeBatchLimit <= 0) {
             throw new IllegalArgumentException("PurgeBatchLimit cannot be equal to or lower than 0");
         }
 
-        String sql = "DELETE FROM " + tablePrefix + "records "
-                + "WHERE " + tablePrefix + "records.created <= ? "
-                + "LIMIT ?;";
-        try (Connection conn = getConnection(); PreparedStatement statement = conn.prepareStatement(sql)) {
-            statement.setLong(1, date.getTime() / 1000);
-            statement.setInt(2, purgeBatchLimit);
-            return statement.executeUpdate();
+        try (Connection conn = getConnection()) {
+            if (!partitions.hasForeignKey()) {
+                // Without the foreign key extra rows have to go first, for the same records
+                String extraSql = "DELETE e FROM " + tablePrefix + "extra AS e "
+                        + "JOIN (SELECT id FROM " + tablePrefix + "records WHERE created <= ? ORDER BY id LIMIT ?) AS r "
+                        + "ON r.id = e.record_id;";
+                try (PreparedStatement statement = conn.prepareStatement(extraSql)) {
+                    statement.setLong(1, expirationTime);
+                    statement.setInt(2, purgeBatchLimit);
+                    statement.executeUpdate();
+                }
+            }
+
+            String sql = "DELETE FROM " + tablePrefix + "records "
+                    + "WHERE " + tablePrefix + "records.created <= ? "
+                    + "ORDER BY id LIMIT ?;";
+            try (PreparedStatement statement = conn.prepareStatement(sql)) {
+                statement.setLong(1, expirationTime);
+                statement.setInt(2, purgeBatchLimit);
+                return statement.executeUpdate();
+            }
         }
     }
 
@@ -228,7 +623,11 @@ public class MySQLStorageAdapter implements StorageAdapter {
     }
 
     @Override
-    public void close() {
+    public synchronized void close() {
+        if (maintenance != null) {
+            maintenance.cancel();
+        }
+
         db.close();
     }
 
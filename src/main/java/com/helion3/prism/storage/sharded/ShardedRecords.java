@@ -0,0 +1,464 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.storage.sharded;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.helion3.prism.api.flags.Flag;
+import com.helion3.prism.api.query.Keyset;
+import com.helion3.prism.api.query.Query;
+import com.helion3.prism.api.query.QuerySession;
+import com.helion3.prism.api.query.Sort;
+import com.helion3.prism.api.records.Result;
+import com.helion3.prism.api.storage.PartialWriteException;
+import com.helion3.prism.api.storage.StorageAdapter;
+import com.helion3.prism.api.storage.StorageAdapterRecords;
+import com.helion3.prism.api.storage.StorageDeleteResult;
+import com.helion3.prism.api.storage.StorageWriteResult;
+import com.helion3.prism.util.DataQueries;
+import org.spongepowered.api.data.DataContainer;
+import org.spongepowered.api.data.DataQuery;
+
+/**
+ * Spreads records over several storage adapters.
+ *
+ * Records are written to a single shard, picked by their world or by the
+ * time bucket they were created in. When some shards fail a write, only
+ * their records are handed back in a {@link PartialWriteException}, so a
+ * retry doesn't write the others again.
+ *
+ * Lookups run on every shard in parallel and their results are merged by
+ * creation date. Individual records keep a {@link ShardCursor} as their
+ * id, so a following page continues every shard where it left off.
+ */
+public class ShardedRecords implements StorageAdapterRecords {
+
+    private static final DataQuery YEAR = DataQuery.of("year");
+    private static final DataQuery MONTH = DataQuery.of("month");
+    private static final DataQuery DAY_OF_MONTH = DataQuery.of("dayOfMonth");
+
+    private final List<StorageAdapter> shards;
+    private final Map<String, Integer> worldShards;
+    private final long timeBucket;
+    private final ExecutorService executor;
+
+    /**
+     * @param shards List of shards, the first one takes records no other shard is assigned
+     * @param worldShards Map of world UUIDs to the index of their shard
+     * @param timeBucket Milliseconds per time bucket, or 0 to shard by world
+     * @param executor Runs shard operations in parallel
+     */
+    public ShardedRecords(List<StorageAdapter> shards, Map<String, Integer> worldShards, long timeBucket, ExecutorService executor) {
+        this.shards = shards;
+        this.worldShards = worldShards;
+        this.timeBucket = timeBucket;
+        this.executor = executor;
+    }
+
+    @Override
+    public StorageWriteResult write(List<DataContainer> containers) throws Exception {
+        List<List<DataContainer>> partitions = new ArrayList<>(shards.size());
+        for (int index = 0; index < shards.size(); index++) {
+            partitions.add(new ArrayList<>());
+        }
+
+        for (DataContainer container : containers) {
+            partitions.get(getShard(container)).add(container);
+        }
+
+        List<Future<StorageWriteResult>> futures = new ArrayList<>(shards.size());
+        for (int index = 0; index < shards.size(); index++) {
+            List<DataContainer> partition = partitions.get(index);
+            StorageAdapterRecords records = shards.get(index).records();
+            futures.add(partition.isEmpty() ? null : executor.submit(() -> records.write(partition)));
+        }
+
+        // Shards which succeeded keep their records, only the others are handed back
+        List<DataContainer> unwritten = new ArrayList<>();
+        Throwable failure = null;
+        for (int index = 0; index < futures.size(); index++) {
+            if (futures.get(index) == null) {
+                continue;
+            }
+
+            try {
+                futures.get(index).get();
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof PartialWriteException) {
+                    unwritten.addAll(((PartialWriteException) cause).getUnwritten());
+                    cause = cause.getCause();
+                } else {
+                    unwritten.addAll(partitions.get(index));
+                }
+
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw new PartialWriteException(unwritten, failure);
+        }
+
+        return new StorageWriteResult();
+    }
+
+    @Override
+    public CompletableFuture<List<Result>> query(QuerySession session, boolean translate) throws Exception {
+        return queryShards(session, getCursor(session.getQuery()), translate);
+    }
+
+    /**
+     * Pages through every shard a chunk at a time, each page continuing
+     * from the shard positions of the last record of the previous one.
+     * Grouped results are merged as a whole and are handed over at once.
+     */
+    @Override
+    public void stream(QuerySession session, boolean translate, int chunkSize, ResultConsumer consumer) throws Exception {
+        if (!session.hasFlag(Flag.NO_GROUP)) {
+            StorageAdapterRecords.super.stream(session, translate, chunkSize, consumer);
+            return;
+        }
+
+        ShardCursor cursor = getCursor(session.getQuery());
+        int remaining = session.getQuery().getLimit();
+        while (remaining > 0) {
+            Query query = session.getQuery().copy();
+            query.setLimit(Math.min(chunkSize, remaining));
+
+            List<Result> page = queryShards(session.withQuery(query), cursor, translate).get();
+            if (page.isEmpty()) {
+                return;
+            }
+
+            // Read before the consumer gets to change the results
+            cursor = (ShardCursor) page.get(page.size() - 1).data.get(DataQueries.RecordId).get();
+            if (!consumer.accept(page) || page.size() < query.getLimit()) {
+                return;
+            }
+
+            remaining -= page.size();
+        }
+    }
+
+    /**
+     * Queries every shard from its position in the cursor and merges the
+     * results.
+     *
+     * @param session QuerySession
+     * @param cursor Position of every shard
+     * @param translate Translate player UUIDs -> Last known names
+     * @return List of results
+     */
+    private CompletableFuture<List<Result>> queryShards(QuerySession session, ShardCursor cursor, boolean translate) {
+        List<CompletableFuture<List<Result>>> futures = new ArrayList<>(shards.size());
+        for (int index = 0; index < shards.size(); index++) {
+            Query query = session.getQuery().copy();
+            query.setKeyset(cursor.get(index));
+
+            QuerySession shardSession = session.withQuery(query);
+            StorageAdapterRecords records = shards.get(index).records();
+            futures.add(CompletableFuture.supplyAsync(() -> queryShard(records, shardSession, translate), executor));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(v -> {
+            List<List<Result>> results = new ArrayList<>(futures.size());
+            futures.forEach(future -> results.add(future.join()));
+
+            if (session.hasFlag(Flag.NO_GROUP)) {
+                return mergeRecords(results, session.getSortBy(), session.getQuery().getLimit(), cursor);
+            }
+
+            return mergeAggregates(results, session.getSortBy(), session.getQuery().getLimit());
+        });
+    }
+
+    private ShardCursor getCursor(Query query) {
+        return query.getKeyset()
+                .map(Keyset::getId)
+                .filter(ShardCursor.class::isInstance)
+                .map(ShardCursor.class::cast)
+                .orElseGet(() -> new ShardCursor(new Keyset[shards.size()]));
+    }
+
+    @Override
+    public StorageDeleteResult delete(Query query) throws Exception {
+        List<Future<StorageDeleteResult>> futures = new ArrayList<>(shards.size());
+        for (StorageAdapter shard : shards) {
+            futures.add(executor.submit(() -> shard.records().delete(query)));
+        }
+
+        awaitAll(futures);
+        return new StorageDeleteResult();
+    }
+
+    /**
+     * Returns the index of the shard a record belongs to.
+     *
+     * @param container Record
+     * @return Shard index
+     */
+    private int getShard(DataContainer container) {
+        if (timeBucket > 0) {
+            long created = container.get(DataQueries.Created)
+                    .filter(Date.class::isInstance)
+                    .map(date -> ((Date) date).getTime())
+                    .orElseGet(System::currentTimeMillis);
+
+            return (int) Math.floorMod(created / timeBucket, (long) shards.size());
+        }
+
+        return container.getString(DataQueries.Location.then(DataQueries.WorldUuid)).map(worldShards::get).orElse(0);
+    }
+
+    private static List<Result> queryShard(StorageAdapterRecords records, QuerySession session, boolean translate) {
+        try {
+            return records.query(session, translate).get();
+        } catch (Exception ex) {
+            throw new CompletionException(ex);
+        }
+    }
+
+    /**
+     * Waits for every shard, then rethrows the first failure with any
+     * others attached.
+     *
+     * @param futures List of futures
+     * @throws Exception If a shard failed
+     */
+    private static void awaitAll(List<? extends Future<?>> futures) throws Exception {
+        Exception failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ex) {
+                Exception cause = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Merges the sorted records of every shard, keeping the order within
+     * each shard. Records created at the same time are taken from the
+     * lower shard first.
+     *
+     * @param results List of results per shard
+     * @param sort Sort order of the results
+     * @param limit Maximum amount of results
+     * @param cursor Position every shard started at
+     * @return List of results
+     */
+    private static List<Result> mergeRecords(List<List<Result>> results, Sort sort, int limit, ShardCursor cursor) {
+        Comparator<Head> byCreated = Comparator.comparingLong(head -> head.created);
+        if (sort.equals(Sort.NEWEST_FIRST)) {
+            byCreated = byCreated.reversed();
+        }
+
+        PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(results.size(), 1), byCreated.thenComparingInt(head -> head.shard));
+        for (int index = 0; index < results.size(); index++) {
+            Head head = new Head(index, results.get(index).iterator());
+            if (head.next()) {
+                heads.add(head);
+            }
+        }
+
+        List<Result> merged = new ArrayList<>();
+        Keyset[] positions = cursor.positions.clone();
+        while (!heads.isEmpty() && merged.size() < limit) {
+            Head head = heads.poll();
+            Result result = head.result;
+
+            positions[head.shard] = Keyset.from(result).orElse(positions[head.shard]);
+            result.data.set(DataQueries.RecordId, new ShardCursor(positions.clone()));
+            merged.add(result);
+
+            if (head.next()) {
+                heads.add(head);
+            }
+        }
+
+        return merged;
+    }
+
+    /**
+     * Combines the grouped results of every shard, adding up the counts of
+     * groups found in more than one shard. Groups are matched on the same
+     * fields storage groups by, then sorted by day.
+     *
+     * @param results List of results per shard
+     * @param sort Sort order of the results
+     * @param limit Maximum amount of results
+     * @return List of results
+     */
+    private static List<Result> mergeAggregates(List<List<Result>> results, Sort sort, int limit) {
+        Map<String, Result> groups = new LinkedHashMap<>();
+        Map<Result, String> days = new IdentityHashMap<>();
+        for (List<Result> shardResults : results) {
+            for (Result result : shardResults) {
+                String day = getDay(result);
+                String key = result.getEventId() + "\n"
+                        + result.data.getString(DataQueries.Target).orElse("") + "\n"
+                        + result.data.getString(DataQueries.Player).orElse("") + "\n"
+                        + result.data.getString(DataQueries.Cause).orElse("") + "\n"
+                        + day;
+
+                Result group = groups.putIfAbsent(key, result);
+                if (group != null) {
+                    int count = group.data.getInt(DataQueries.Count).orElse(0) + result.data.getInt(DataQueries.Count).orElse(0);
+                    group.data.set(DataQueries.Count, count);
+                } else {
+                    days.put(result, day);
+                }
+            }
+        }
+
+        Comparator<Result> byDay = Comparator.comparing(days::get);
+        if (sort.equals(Sort.NEWEST_FIRST)) {
+            byDay = byDay.reversed();
+        }
+
+        List<Result> merged = new ArrayList<>(groups.values());
+        merged.sort(byDay);
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    /**
+     * Returns the day a grouped result was created on, as yyyy-MM-dd.
+     * Mongo returns the parts of the day, SQL storage a date or epoch
+     * seconds.
+     *
+     * @param result Result
+     * @return Day, or an empty string if unknown
+     */
+    private static String getDay(Result result) {
+        Optional<Integer> year = result.data.getInt(YEAR);
+        Optional<Integer> month = result.data.getInt(MONTH);
+        Optional<Integer> day = result.data.getInt(DAY_OF_MONTH);
+        if (year.isPresent() && month.isPresent() && day.isPresent()) {
+            return String.format("%04d-%02d-%02d", year.get(), month.get(), day.get());
+        }
+
+        Object created = result.data.get(DataQueries.Created).orElse(null);
+        if (created instanceof Date || created instanceof Number) {
+            return Instant.ofEpochMilli(Head.getCreated(result)).atZone(ZoneOffset.UTC).toLocalDate().toString();
+        }
+
+        return created != null ? created.toString() : "";
+    }
+
+    /**
+     * The next unmerged record of a shard.
+     */
+    private static final class Head {
+        private final int shard;
+        private final Iterator<Result> iterator;
+        private Result result;
+        private long created;
+
+        private Head(int shard, Iterator<Result> iterator) {
+            this.shard = shard;
+            this.iterator = iterator;
+        }
+
+        private boolean next() {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+
+            result = iterator.next();
+            created = getCreated(result);
+            return true;
+        }
+
+        private static long getCreated(Result result) {
+            Object created = result.data.get(DataQueries.Created).orElse(null);
+            if (created instanceof Date) {
+                return ((Date) created).getTime();
+            }
+
+            // SQL storage returns epoch seconds
+            if (created instanceof Number) {
+                return ((Number) created).longValue() * 1000L;
+            }
+
+            return 0L;
+        }
+    }
+
+    /**
+     * Position of every shard after a record, used as its id.
+     */
+    public static final class ShardCursor {
+        private final Keyset[] positions;
+
+        private ShardCursor(Keyset[] positions) {
+            this.positions = positions;
+        }
+
+        /**
+         * Get the position of a shard.
+         *
+         * @param shard Shard index
+         * @return Keyset, or null if no record of the shard was returned yet
+         */
+        public Keyset get(int shard) {
+            return shard < positions.length ? positions[shard] : null;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(positions);
+        }
+    }
+}
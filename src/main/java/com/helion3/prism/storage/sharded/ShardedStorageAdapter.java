@@ -0,0 +1,115 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.storage.sharded;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.helion3.prism.Prism;
+import com.helion3.prism.api.storage.StorageAdapter;
+import com.helion3.prism.api.storage.StorageAdapterRecords;
+import com.helion3.prism.api.storage.StorageAdapterSettings;
+import com.helion3.prism.configuration.category.ShardCategory;
+
+/**
+ * Storage adapter spreading records over several databases, each with its
+ * own adapter and connection pool. See {@link ShardedRecords}.
+ */
+public class ShardedStorageAdapter implements StorageAdapter {
+
+    private final List<StorageAdapter> shards;
+    private final ExecutorService executor;
+    private final ShardedRecords records;
+
+    /**
+     * Create a new sharded storage adapter.
+     *
+     * @param shards List of adapters, the first one is the default shard
+     * @param categories List of shard settings, in the same order as the adapters
+     * @param timeBucket Milliseconds per time bucket, or 0 to shard by world
+     */
+    public ShardedStorageAdapter(List<StorageAdapter> shards, List<ShardCategory> categories, long timeBucket) {
+        this.shards = shards;
+
+        Map<String, Integer> worldShards = new HashMap<>();
+        for (int index = 0; index < categories.size(); index++) {
+            for (String world : categories.get(index).getWorlds()) {
+                worldShards.put(world.toLowerCase(), index);
+            }
+        }
+
+        executor = Executors.newFixedThreadPool(shards.size(), new ThreadFactoryBuilder().setNameFormat("PrismShard-%d").setDaemon(true).build());
+        records = new ShardedRecords(shards, worldShards, timeBucket, executor);
+    }
+
+    @Override
+    public boolean connect() throws Exception {
+        for (int index = 0; index < shards.size(); index++) {
+            if (!shards.get(index).connect()) {
+                Prism.getInstance().getLogger().error("Failed to connect to shard {}", index);
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public StorageAdapterRecords records() {
+        return records;
+    }
+
+    @Override
+    public StorageAdapterSettings settings() {
+        return shards.get(0).settings();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        shards.forEach(StorageAdapter::close);
+    }
+
+    @Override
+    public boolean testConnection() throws Exception {
+        for (StorageAdapter shard : shards) {
+            if (!shard.testConnection()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
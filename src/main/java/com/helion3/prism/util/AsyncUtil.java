@@ -24,6 +24,7 @@
 package com.helion3.prism.util;
 
 import com.helion3.prism.Prism;
+import com.helion3.prism.api.flags.Flag;
 import com.helion3.prism.api.query.QuerySession;
 import com.helion3.prism.api.records.Result;
 import org.spongepowered.api.Sponge;
@@ -41,7 +42,13 @@ public class AsyncUtil {
      */
     public static void lookup(final QuerySession session) {
         // Enforce lookup limits
-        session.getQuery().setLimit(Prism.getInstance().getConfig().getLimitCategory().getMaximumLookup());
+        int limit = Prism.getInstance().getConfig().getLimitCategory().getMaximumLookup();
+        if (session.hasFlag(Flag.NO_GROUP)) {
+            // Individual records are fetched a page at a time, see /pr next
+            limit = Math.min(limit, Math.max(Prism.getInstance().getConfig().getLimitCategory().getLookupPageSize(), 1));
+        }
+
+        session.getQuery().setLimit(limit);
         async(session, new LookupCallback(session));
     }
 
@@ -26,18 +26,57 @@ package com.helion3.prism.util;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.google.common.collect.ImmutableSet;
 import org.spongepowered.api.Sponge;
+import org.spongepowered.api.block.BlockState;
 import org.spongepowered.api.block.BlockType;
 import org.spongepowered.api.block.BlockTypes;
+import org.spongepowered.api.data.DataQuery;
+import org.spongepowered.api.data.DataView;
 import org.spongepowered.api.data.property.block.MatterProperty;
 import org.spongepowered.api.data.property.block.MatterProperty.Matter;
 
 public class BlockUtil {
+    private static final Set<DataQuery> STATE_KEYS = ImmutableSet.of(
+            DataQueries.BlockState, DataQueries.ContentVersion, DataQueries.ExtendedState);
+    private static final Map<String, Optional<BlockState>> palette = new ConcurrentHashMap<>();
+
     private BlockUtil() {}
 
+    /**
+     * Get a block state from its id, like minecraft:stone[variant=granite].
+     * States are cached as appliers tend to place the same few over and over.
+     *
+     * @param id Block state id
+     * @return Optional BlockState
+     */
+    public static Optional<BlockState> getBlockState(String id) {
+        return palette.computeIfAbsent(id, key -> Sponge.getRegistry().getType(BlockState.class, key));
+    }
+
+    /**
+     * Checks if a stored block is fully described by its state, meaning it
+     * has no tile or custom data and can be placed without a snapshot.
+     *
+     * @param block Stored block
+     * @return boolean True if only the state is stored
+     */
+    public static boolean isStateOnly(DataView block) {
+        for (DataQuery key : block.getKeys(false)) {
+            if (!STATE_KEYS.contains(key)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     /**
      * Get a list of all LIQUID block types.
      *
@@ -0,0 +1,411 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import org.spongepowered.api.data.DataContainer;
+import org.spongepowered.api.data.DataQuery;
+import org.spongepowered.api.data.DataSerializable;
+import org.spongepowered.api.data.DataView;
+
+/**
+ * Compact binary encoding for {@link DataView DataViews}.
+ *
+ * Every value is written as a one byte type tag followed by its payload.
+ * Lengths and counts are variable length integers, so the common small
+ * records cost only a few bytes more than their raw values.
+ *
+ * {@link #encode(DataView)} prefixes the payload with a format version and
+ * writes keys as references into a dictionary: the well-known keys below,
+ * followed by every other key the first time it appears in the payload.
+ */
+public class DataCodec {
+    private DataCodec() {}
+
+    /**
+     * Version of the format written by {@link #encode(DataView)}.
+     */
+    public static final byte FORMAT_VERSION = 1;
+
+    /**
+     * Well-known keys. Ids are stored, so entries may only ever be appended.
+     */
+    private static final List<String> KEYS = ImmutableList.of(
+            "BlockType", "BlockState", "Cause", "Container", "ContentVersion", "Count", "Created",
+            "Entity", "EntityType", "EventName", "Id", "Location", "Original", "Player", "Position",
+            "Quantity", "Replacement", "Rotation", "Target", "UnsafeData", "WorldName", "WorldUuid",
+            "X", "Y", "Z", "Pos", "ExtendedState", "Data", "DataClass", "ManipulatorData",
+            "ManipulatorId", "id", "x", "y", "z", "Items", "Slot", "Damage", "tag", "CustomName",
+            "Lock", "Text1", "Text2", "Text3", "Text4", "Patterns", "Base", "Color", "Pattern");
+
+    private static final Map<String, Integer> KEY_IDS = new HashMap<>();
+
+    static {
+        for (int index = 0; index < KEYS.size(); index++) {
+            KEY_IDS.put(KEYS.get(index), index);
+        }
+    }
+
+    private static final byte TAG_VIEW = 1;
+    private static final byte TAG_LIST = 2;
+    private static final byte TAG_STRING = 3;
+    private static final byte TAG_INT = 4;
+    private static final byte TAG_LONG = 5;
+    private static final byte TAG_DOUBLE = 6;
+    private static final byte TAG_BOOLEAN = 7;
+    private static final byte TAG_BYTE = 8;
+    private static final byte TAG_SHORT = 9;
+    private static final byte TAG_FLOAT = 10;
+    private static final byte TAG_DATE = 11;
+    private static final byte TAG_BYTE_ARRAY = 12;
+    private static final byte TAG_INT_ARRAY = 13;
+    private static final byte TAG_LONG_ARRAY = 14;
+
+    /**
+     * Encodes a DataView to a byte array.
+     *
+     * @param view DataView
+     * @return Encoded bytes
+     */
+    public static byte[] encode(DataView view) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try {
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeByte(FORMAT_VERSION);
+            writeView(output, view, new KeyWriter());
+        } catch (IOException ex) {
+            // Not thrown by ByteArrayOutputStream
+            throw new IllegalStateException(ex);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a byte array created by {@link #encode(DataView)}.
+     *
+     * @param bytes Encoded bytes
+     * @return DataContainer
+     * @throws IOException If the bytes are malformed
+     */
+    public static DataContainer decode(byte[] bytes) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+        byte version = input.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported format version " + version);
+        }
+
+        DataContainer container = DataContainer.createNew();
+        readView(input, container, new KeyReader());
+        return container;
+    }
+
+    /**
+     * Writes a DataView with inline keys and no format version.
+     *
+     * @param output DataOutput
+     * @param view DataView
+     * @throws IOException If writing fails
+     */
+    public static void writeView(DataOutput output, DataView view) throws IOException {
+        writeView(output, view, null);
+    }
+
+    /**
+     * Reads a DataView written by {@link #writeView(DataOutput, DataView)}.
+     *
+     * @param input DataInput
+     * @return DataContainer
+     * @throws IOException If reading fails or the data is malformed
+     */
+    public static DataContainer readView(DataInput input) throws IOException {
+        DataContainer container = DataContainer.createNew();
+        readView(input, container, null);
+        return container;
+    }
+
+    private static void writeView(DataOutput output, DataView view, KeyWriter keys) throws IOException {
+        List<DataQuery> queries = new ArrayList<>(view.getKeys(false));
+        writeVarInt(output, queries.size());
+        for (DataQuery query : queries) {
+            String key = query.asString('.');
+            if (keys != null) {
+                keys.write(output, key);
+            } else {
+                writeString(output, key);
+            }
+
+            writeValue(output, view.get(query).orElse(null), keys);
+        }
+    }
+
+    private static void readView(DataInput input, DataView view, KeyReader keys) throws IOException {
+        int size = readVarInt(input);
+        for (int index = 0; index < size; index++) {
+            DataQuery key = DataQuery.of(keys != null ? keys.read(input) : readString(input));
+            byte tag = input.readByte();
+            if (tag == TAG_VIEW) {
+                readView(input, view.createView(key), keys);
+            } else {
+                view.set(key, readValue(input, tag, keys));
+            }
+        }
+    }
+
+    private static void writeValue(DataOutput output, Object value, KeyWriter keys) throws IOException {
+        if (value instanceof DataView) {
+            output.writeByte(TAG_VIEW);
+            writeView(output, (DataView) value, keys);
+        } else if (value instanceof DataSerializable) {
+            output.writeByte(TAG_VIEW);
+            writeView(output, ((DataSerializable) value).toContainer(), keys);
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            output.writeByte(TAG_LIST);
+            writeVarInt(output, collection.size());
+            for (Object object : collection) {
+                writeValue(output, object, keys);
+            }
+        } else if (value instanceof Integer) {
+            output.writeByte(TAG_INT);
+            output.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            output.writeByte(TAG_LONG);
+            output.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            output.writeByte(TAG_DOUBLE);
+            output.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            output.writeByte(TAG_BOOLEAN);
+            output.writeBoolean((Boolean) value);
+        } else if (value instanceof Byte) {
+            output.writeByte(TAG_BYTE);
+            output.writeByte((Byte) value);
+        } else if (value instanceof Short) {
+            output.writeByte(TAG_SHORT);
+            output.writeShort((Short) value);
+        } else if (value instanceof Float) {
+            output.writeByte(TAG_FLOAT);
+            output.writeFloat((Float) value);
+        } else if (value instanceof Date) {
+            output.writeByte(TAG_DATE);
+            output.writeLong(((Date) value).getTime());
+        } else if (value instanceof byte[]) {
+            byte[] array = (byte[]) value;
+            output.writeByte(TAG_BYTE_ARRAY);
+            writeVarInt(output, array.length);
+            output.write(array);
+        } else if (value instanceof int[]) {
+            int[] array = (int[]) value;
+            output.writeByte(TAG_INT_ARRAY);
+            writeVarInt(output, array.length);
+            for (int element : array) {
+                output.writeInt(element);
+            }
+        } else if (value instanceof long[]) {
+            long[] array = (long[]) value;
+            output.writeByte(TAG_LONG_ARRAY);
+            writeVarInt(output, array.length);
+            for (long element : array) {
+                output.writeLong(element);
+            }
+        } else {
+            output.writeByte(TAG_STRING);
+            writeString(output, String.valueOf(value));
+        }
+    }
+
+    private static Object readValue(DataInput input, byte tag, KeyReader keys) throws IOException {
+        switch (tag) {
+            case TAG_VIEW:
+                DataContainer container = DataContainer.createNew();
+                readView(input, container, keys);
+                return container;
+            case TAG_LIST:
+                int size = readVarInt(input);
+                List<Object> list = new ArrayList<>(Math.min(size, 1024));
+                for (int index = 0; index < size; index++) {
+                    list.add(readValue(input, input.readByte(), keys));
+                }
+
+                return list;
+            case TAG_STRING:
+                return readString(input);
+            case TAG_INT:
+                return input.readInt();
+            case TAG_LONG:
+                return input.readLong();
+            case TAG_DOUBLE:
+                return input.readDouble();
+            case TAG_BOOLEAN:
+                return input.readBoolean();
+            case TAG_BYTE:
+                return input.readByte();
+            case TAG_SHORT:
+                return input.readShort();
+            case TAG_FLOAT:
+                return input.readFloat();
+            case TAG_DATE:
+                return new Date(input.readLong());
+            case TAG_BYTE_ARRAY:
+                byte[] byteArray = new byte[readVarInt(input)];
+                input.readFully(byteArray);
+                return byteArray;
+            case TAG_INT_ARRAY:
+                int[] intArray = new int[readVarInt(input)];
+                for (int index = 0; index < intArray.length; index++) {
+                    intArray[index] = input.readInt();
+                }
+
+                return intArray;
+            case TAG_LONG_ARRAY:
+                long[] longArray = new long[readVarInt(input)];
+                for (int index = 0; index < longArray.length; index++) {
+                    longArray[index] = input.readLong();
+                }
+
+                return longArray;
+            default:
+                throw new IOException("Unknown tag " + tag);
+        }
+    }
+
+    private static void writeString(DataOutput output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(output, bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInput input) throws IOException {
+        byte[] bytes = new byte[readVarInt(input)];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes an unsigned variable length integer, seven bits per byte.
+     *
+     * @param output DataOutput
+     * @param value Non-negative value
+     * @throws IOException If writing fails
+     */
+    public static void writeVarInt(DataOutput output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        output.writeByte(value);
+    }
+
+    /**
+     * Reads an unsigned variable length integer.
+     *
+     * @param input DataInput
+     * @return Value
+     * @throws IOException If reading fails or the value is malformed
+     */
+    public static int readVarInt(DataInput input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte current = input.readByte();
+            value |= (current & 0x7F) << shift;
+            if ((current & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IOException("Negative length");
+                }
+
+                return value;
+            }
+        }
+
+        throw new IOException("Malformed variable length integer");
+    }
+
+    /**
+     * Assigns dictionary ids to keys while writing.
+     */
+    private static final class KeyWriter {
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        private void write(DataOutput output, String key) throws IOException {
+            Integer id = KEY_IDS.get(key);
+            if (id == null) {
+                id = ids.get(key);
+            }
+
+            if (id != null) {
+                writeVarInt(output, id + 1);
+                return;
+            }
+
+            // First occurrence, written inline and referenced from then on
+            ids.put(key, KEYS.size() + ids.size());
+            writeVarInt(output, 0);
+            writeString(output, key);
+        }
+    }
+
+    /**
+     * Resolves dictionary ids to keys while reading.
+     */
+    private static final class KeyReader {
+        private final List<String> keys = new ArrayList<>();
+
+        private String read(DataInput input) throws IOException {
+            int id = readVarInt(input);
+            if (id == 0) {
+                String key = readString(input);
+                keys.add(key);
+                return key;
+            }
+
+            id--;
+            if (id < KEYS.size()) {
+                return KEYS.get(id);
+            }
+
+            if (id - KEYS.size() >= keys.size()) {
+                throw new IOException("Unknown key id " + id);
+            }
+
+            return keys.get(id - KEYS.size());
+        }
+    }
+}
@@ -36,6 +36,7 @@ public final class DataQueries {
     public static final DataQuery BlockType = of("BlockType");
     public static final DataQuery BlockState = of("BlockState");
     public static final DataQuery Cause = of("Cause");
+    public static final DataQuery Chunk = of("Chunk");
     public static final DataQuery Container = of("Container");
     public static final DataQuery ContentVersion = of("ContentVersion");
     public static final DataQuery Count = of("Count");
@@ -43,12 +44,14 @@ public final class DataQueries {
     public static final DataQuery Entity = of("Entity");
     public static final DataQuery EntityType = of("EntityType");
     public static final DataQuery EventName = of("EventName");
+    public static final DataQuery ExtendedState = of("ExtendedState");
     public static final DataQuery Id = of("Id");
     public static final DataQuery Location = of("Location");
     public static final DataQuery OriginalBlock = of("Original");
     public static final DataQuery Player = of("Player");
     public static final DataQuery Position = of("Position");
     public static final DataQuery Quantity = of("Quantity");
+    public static final DataQuery RecordId = of("RecordId");
     public static final DataQuery ReplacementBlock = of("Replacement");
     public static final DataQuery Rotation = of("Rotation");
     public static final DataQuery Target = of("Target");
@@ -269,30 +269,123 @@ public class DataUtil {
     }
 
     /**
-     * Helper method to translate Player UUIDs to names.
+     * Roughly estimates the serialized size of a DataView in bytes
+     * without actually serializing it.
+     *
+     * @param view DataView
+     * @return long Estimated size in bytes
+     */
+    public static long estimateSize(DataView view) {
+        long size = 0;
+        for (DataQuery query : view.getKeys(false)) {
+            size += query.toString().length() + estimateValueSize(view.get(query).orElse(null));
+        }
+
+        return size;
+    }
+
+    private static long estimateValueSize(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof DataView) {
+            return estimateSize((DataView) value);
+        } else if (value instanceof String) {
+            return ((String) value).length();
+        } else if (value instanceof Collection) {
+            long size = 0;
+            for (Object object : (Collection<?>) value) {
+                size += estimateValueSize(object);
+            }
+
+            return size;
+        } else if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        } else if (value instanceof int[]) {
+            return ((int[]) value).length * 4L;
+        } else if (value instanceof long[]) {
+            return ((long[]) value).length * 8L;
+        }
+
+        return 8;
+    }
+
+    /**
+     * Helper method to translate Player UUIDs to names. Each player is
+     * resolved once, from the name cache if possible, and results are then
+     * updated in a single pass.
      *
      * @param results List of results
      * @param uuidsPendingLookup Lists of UUIDs pending lookup
      * @return CompletableFuture
      */
     public static CompletableFuture<List<Result>> translateUuidsToNames(List<Result> results, List<UUID> uuidsPendingLookup) {
-        CompletableFuture<List<Result>> future = new CompletableFuture<>();
-
-        CompletableFuture<Collection<GameProfile>> futures = Sponge.getServer().getGameProfileManager().getAllById(uuidsPendingLookup, true);
-        futures.thenAccept((profiles) -> {
-            for (GameProfile profile : profiles) {
-                for (Result r : results) {
-                    Optional<Object> cause = r.data.get(DataQueries.Cause);
-                    if (cause.isPresent() && cause.get().equals(profile.getUniqueId().toString())) {
-                        r.data.set(DataQueries.Cause, profile.getName().orElse("unknown"));
-                    }
+        // Names by the UUID string stored as the cause
+        Map<String, String> names = new HashMap<>();
+        List<UUID> uncached = new ArrayList<>();
+        for (UUID uuid : new HashSet<>(uuidsPendingLookup)) {
+            Optional<String> name = NameCache.get(uuid);
+            if (name.isPresent()) {
+                names.put(uuid.toString(), name.get());
+            } else {
+                uncached.add(uuid);
+            }
+        }
+
+        if (uncached.isEmpty()) {
+            applyNames(results, names);
+            return CompletableFuture.completedFuture(results);
+        }
+
+        return Sponge.getServer().getGameProfileManager().getAllById(uncached, true).handle((profiles, ex) -> {
+            if (ex != null) {
+                Prism.getInstance().getLogger().warn("Failed to look up player names", ex);
+            } else {
+                for (GameProfile profile : profiles) {
+                    profile.getName().ifPresent(name -> NameCache.put(profile.getUniqueId(), name));
+                    names.put(profile.getUniqueId().toString(), profile.getName().orElse("unknown"));
                 }
             }
 
-            future.complete(results);
+            applyNames(results, names);
+            return results;
         });
+    }
+
+    /**
+     * Replaces player UUID causes with their names.
+     *
+     * @param results List of results
+     * @param names Map of UUID strings to names
+     */
+    private static void applyNames(List<Result> results, Map<String, String> names) {
+        for (Result result : results) {
+            Optional<Object> cause = result.data.get(DataQueries.Cause);
+            if (!cause.isPresent()) {
+                continue;
+            }
+
+            String name = names.get(cause.get().toString());
+            if (name != null) {
+                result.data.set(DataQueries.Cause, name);
+            }
+        }
+    }
+
+    /**
+     * Translates player UUIDs like {@link #translateUuidsToNames(List, List)},
+     * waiting for the names. Must not be called from the main thread.
+     *
+     * @param results List of results
+     * @param uuidsPendingLookup List of UUIDs to translate
+     * @return The same results
+     * @throws Exception If the lookup was interrupted or failed
+     */
+    public static List<Result> translateUuidsToNamesAndWait(List<Result> results, List<UUID> uuidsPendingLookup) throws Exception {
+        if (uuidsPendingLookup.isEmpty()) {
+            return results;
+        }
 
-        return future;
+        return translateUuidsToNames(results, uuidsPendingLookup).get();
     }
 
     /**
@@ -26,6 +26,7 @@ package com.helion3.prism.util;
 
 import com.helion3.prism.Prism;
 import com.helion3.prism.api.flags.Flag;
+import com.helion3.prism.api.query.Keyset;
 import com.helion3.prism.api.query.QuerySession;
 import com.helion3.prism.api.records.Result;
 import com.helion3.prism.api.records.ResultAggregate;
@@ -41,6 +42,7 @@ import org.spongepowered.api.world.World;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 public class LookupCallback extends AsyncCallback {
 
@@ -66,11 +68,28 @@ public class LookupCallback extends AsyncCallback {
         paginationBuilder.padding(Text.of(TextColors.DARK_GRAY, "="));
         paginationBuilder.linesPerPage(15);
         paginationBuilder.contents(messages);
+
+        // A full page of records may continue, remember where it ended
+        String identifier = this.querySession.getCommandSource().getIdentifier();
+        Optional<Keyset> keyset = Keyset.from(results.get(results.size() - 1));
+        if (this.querySession.hasFlag(Flag.NO_GROUP) && results.size() >= this.querySession.getQuery().getLimit() && keyset.isPresent()) {
+            this.querySession.getQuery().setKeyset(keyset.get());
+            Prism.getInstance().getLastLookups().put(identifier, this.querySession);
+            paginationBuilder.footer(Text.builder("[Next page]")
+                    .color(TextColors.GOLD)
+                    .onClick(TextActions.runCommand("/pr next"))
+                    .onHover(TextActions.showText(Text.of("Show the following records")))
+                    .build());
+        } else {
+            Prism.getInstance().getLastLookups().remove(identifier);
+        }
+
         paginationBuilder.build().sendTo(this.querySession.getCommandSource());
     }
 
     @Override
     public void empty() {
+        Prism.getInstance().getLastLookups().remove(this.querySession.getCommandSource().getIdentifier());
         this.querySession.getCommandSource().sendMessage(Format.error("Nothing found. See /pr ? for help."));
     }
 
@@ -112,11 +131,13 @@ public class LookupCallback extends AsyncCallback {
             hoverMessage.append(Text.of(TextColors.DARK_GRAY, "Container: ", TextColors.WHITE, container, Text.NEW_LINE));
         }
 
-        if (result instanceof ResultAggregate) {
-            int count = result.data.getInt(DataQueries.Count).orElse(0);
-            if (count > 0) {
-                resultMessage.append(Text.of(TextColors.GREEN, "x", count, " "));
-                hoverMessage.append(Text.of(TextColors.DARK_GRAY, "Count: ", TextColors.WHITE, count));
+        // Aggregates count grouped records, complete results count merged changes
+        int count = result.data.getInt(DataQueries.Count).orElse(0);
+        if (count > 1 || (result instanceof ResultAggregate && count > 0)) {
+            resultMessage.append(Text.of(TextColors.GREEN, "x", count, " "));
+            hoverMessage.append(Text.of(TextColors.DARK_GRAY, "Count: ", TextColors.WHITE, count));
+            if (result instanceof ResultComplete) {
+                hoverMessage.append(Text.NEW_LINE);
             }
         }
 
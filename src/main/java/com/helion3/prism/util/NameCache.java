@@ -0,0 +1,66 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.util;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Bounded cache of player names by UUID, used when translating lookup
+ * results. Filled as players join and leave, and by profile lookups.
+ */
+public final class NameCache {
+
+    private static final Cache<UUID, String> names = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(6, TimeUnit.HOURS)
+            .build();
+
+    private NameCache() {
+    }
+
+    /**
+     * Get the cached name of a player.
+     *
+     * @param uuid Player UUID
+     * @return Optional name
+     */
+    public static Optional<String> get(UUID uuid) {
+        return Optional.ofNullable(names.getIfPresent(uuid));
+    }
+
+    /**
+     * Cache the name of a player.
+     *
+     * @param uuid Player UUID
+     * @param name Player name
+     */
+    public static void put(UUID uuid, String name) {
+        names.put(uuid, name);
+    }
+}
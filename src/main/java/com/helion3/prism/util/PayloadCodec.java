@@ -0,0 +1,167 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.commons.lang3.StringUtils;
+import org.spongepowered.api.data.DataContainer;
+import org.spongepowered.api.data.DataView;
+
+/**
+ * Encodes extra record data for SQL storage, optionally compressed.
+ *
+ * The codec used is stored with every row, so rows written with different
+ * settings can be read side by side. Payloads below the threshold, or which
+ * don't get any smaller, are stored uncompressed.
+ */
+public class PayloadCodec {
+
+    /**
+     * Uncompressed {@link DataCodec} payload.
+     */
+    public static final int CODEC_NONE = 0;
+
+    /**
+     * Deflate compressed {@link DataCodec} payload.
+     */
+    public static final int CODEC_DEFLATE = 1;
+
+    private static final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+    private final int codec;
+    private final int threshold;
+
+    /**
+     * Create a codec.
+     *
+     * @param compression Compression name, "none" or "deflate"
+     * @param threshold Minimum payload size in bytes to compress
+     */
+    public PayloadCodec(String compression, int threshold) {
+        this.codec = StringUtils.equalsIgnoreCase(compression, "deflate") ? CODEC_DEFLATE : CODEC_NONE;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Encodes a DataView.
+     *
+     * @param view DataView
+     * @return Payload
+     */
+    public Payload encode(DataView view) {
+        byte[] bytes = DataCodec.encode(view);
+        if (codec == CODEC_DEFLATE && bytes.length >= threshold) {
+            byte[] compressed = deflate(bytes);
+            if (compressed.length < bytes.length) {
+                return new Payload(CODEC_DEFLATE, compressed);
+            }
+        }
+
+        return new Payload(CODEC_NONE, bytes);
+    }
+
+    /**
+     * Decodes a payload.
+     *
+     * @param codec Codec id stored with the payload
+     * @param bytes Payload
+     * @return DataContainer
+     * @throws IOException If the payload is malformed or the codec is unknown
+     */
+    public static DataContainer decode(int codec, byte[] bytes) throws IOException {
+        switch (codec) {
+            case CODEC_NONE:
+                return DataCodec.decode(bytes);
+            case CODEC_DEFLATE:
+                return DataCodec.decode(inflate(bytes));
+            default:
+                throw new IOException("Unknown payload codec " + codec);
+        }
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(bytes);
+        deflater.finish();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 2);
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished()) {
+            output.write(buffer, 0, deflater.deflate(buffer));
+        }
+
+        return output.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] bytes) throws IOException {
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(bytes);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length * 3);
+        byte[] buffer = new byte[4096];
+        try {
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated payload");
+                }
+
+                output.write(buffer, 0, length);
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException(ex);
+        }
+
+        return output.toByteArray();
+    }
+
+    /**
+     * Encoded payload and the codec used for it.
+     */
+    public static final class Payload {
+        private final int codec;
+        private final byte[] bytes;
+
+        private Payload(int codec, byte[] bytes) {
+            this.codec = codec;
+            this.bytes = bytes;
+        }
+
+        public int getCodec() {
+            return codec;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.collect.Range;
+
+/**
+ * Indexed spatial key of a record, identifying the chunk column it's in.
+ *
+ * The chunk x coordinate fills the upper half of the key and the chunk z
+ * coordinate, offset to be non-negative, the lower half. All chunks of one
+ * chunk x column therefore form a single contiguous key range, so an area
+ * is covered by one range per column instead of a scan over x.
+ */
+public final class SpatialKey {
+
+    /**
+     * Areas spanning more chunk columns are covered by one range instead,
+     * the regular coordinate conditions still narrow down the result.
+     */
+    public static final int MAXIMUM_RANGES = 64;
+
+    private SpatialKey() {
+    }
+
+    /**
+     * Returns the key of a block position.
+     *
+     * @param x Block x coordinate
+     * @param z Block z coordinate
+     * @return Spatial key
+     */
+    public static long of(int x, int z) {
+        return ((long) (x >> 4) << 32) + (z >> 4) - (long) Integer.MIN_VALUE;
+    }
+
+    /**
+     * Returns the key ranges covering an area, both corners inclusive.
+     *
+     * @param minX Lowest block x coordinate
+     * @param minZ Lowest block z coordinate
+     * @param maxX Highest block x coordinate
+     * @param maxZ Highest block z coordinate
+     * @return List of closed key ranges
+     */
+    public static List<Range<Long>> ranges(int minX, int minZ, int maxX, int maxZ) {
+        List<Range<Long>> ranges = new ArrayList<>();
+        if ((maxX >> 4) - (minX >> 4) >= MAXIMUM_RANGES) {
+            ranges.add(Range.closed(of(minX, minZ), of(maxX, maxZ)));
+            return ranges;
+        }
+
+        for (int x = minX >> 4; x <= maxX >> 4; x++) {
+            ranges.add(Range.closed(of(x << 4, minZ), of(x << 4, maxZ)));
+        }
+
+        return ranges;
+    }
+
+    /**
+     * Returns an SQL expression computing the key from block coordinate columns.
+     *
+     * @param x String x column
+     * @param z String z column
+     * @return String SQL expression
+     */
+    public static String sqlExpression(String x, String z) {
+        return String.format("FLOOR(%s / 16.0) * 4294967296 + FLOOR(%s / 16.0) + 2147483648", x, z);
+    }
+}
@@ -0,0 +1,566 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+import com.helion3.prism.Prism;
+import com.helion3.prism.api.records.ActionableResult;
+import com.helion3.prism.api.records.BlockChange;
+import com.helion3.prism.configuration.category.LimitCategory;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.block.BlockSnapshot;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.data.DataView;
+import org.spongepowered.api.data.Transaction;
+import org.spongepowered.api.entity.Entity;
+import org.spongepowered.api.scheduler.Task;
+import org.spongepowered.api.world.BlockChangeFlags;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+/**
+ * Keeps the last rollback or restore of each player so it can be undone.
+ *
+ * Changes are stored as plain int arrays indexing into a palette of block
+ * states and worlds. Tile entities keep their whole snapshot in a side
+ * table, so their contents are brought back as well. The amount of changes
+ * kept is bounded per player and in total, least recently used entries are
+ * evicted first. Evicted and oversized entries can be spilled to disk
+ * instead of being dropped.
+ *
+ * Entries are packed and spill files are read and written on async tasks,
+ * one player at a time in the order they were requested, so the server
+ * thread never waits on the disk.
+ */
+public class UndoJournal {
+
+    private static final int MAGIC = 0x50524455;
+    private static final byte VERSION = 2;
+    private static final String SUFFIX = ".undo";
+
+    private final Path directory;
+    private final Map<UUID, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<UUID, CompletableFuture<Void>> pending = new HashMap<>();
+    private final Executor async = task -> Task.builder().async().name("PrismUndoJournal").execute(task).submit(Prism.getInstance());
+    private long totalSize;
+
+    /**
+     * Create a journal spilling to the given directory. Spill files left
+     * over from a previous run are removed.
+     *
+     * @param directory Path to the spill directory
+     */
+    public UndoJournal(Path directory) {
+        this.directory = directory;
+
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> stream = Files.list(directory)) {
+                stream.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).forEach(this::delete);
+            } catch (IOException ex) {
+                Prism.getInstance().getLogger().error("Failed to clear undo directory", ex);
+            }
+        }
+    }
+
+    /**
+     * Replaces the undoable changes of a player. The changes are packed
+     * and stored on an async task.
+     *
+     * @param player Player UUID
+     * @param results List of {@link ActionableResult}s
+     */
+    public void put(UUID player, List<ActionableResult> results) {
+        enqueue(player, () -> store(player, Entry.of(results)));
+    }
+
+    /**
+     * Removes and returns the undoable changes of a player. Entries held in
+     * memory are returned right away, spilled ones are read on an async
+     * task and handed back on the main thread.
+     *
+     * @param player Player UUID
+     * @return Future of the optional entry
+     */
+    public synchronized CompletableFuture<Optional<Entry>> take(UUID player) {
+        if (!pending.containsKey(player) && entries.containsKey(player)) {
+            return CompletableFuture.completedFuture(Optional.of(removeEntry(player)));
+        }
+
+        CompletableFuture<Optional<Entry>> future = new CompletableFuture<>();
+        enqueue(player, () -> {
+            Optional<Entry> entry = load(player);
+            Task.builder().execute(() -> future.complete(entry)).submit(Prism.getInstance());
+        });
+
+        return future;
+    }
+
+    /**
+     * Runs a task on an async thread after the earlier tasks of the same
+     * player have finished.
+     *
+     * @param player Player UUID
+     * @param task Runnable
+     */
+    private synchronized void enqueue(UUID player, Runnable task) {
+        CompletableFuture<Void> previous = pending.getOrDefault(player, CompletableFuture.completedFuture(null));
+        CompletableFuture<Void> next = previous.thenRunAsync(() -> {
+            try {
+                task.run();
+            } catch (Exception ex) {
+                Prism.getInstance().getLogger().error("Failed to update the undo journal of {}", player, ex);
+            }
+        }, async);
+
+        pending.put(player, next);
+        next.whenComplete((result, ex) -> {
+            synchronized (this) {
+                pending.remove(player, next);
+            }
+        });
+    }
+
+    /**
+     * Stores a packed entry, spilling it or the entries it evicts.
+     *
+     * @param player Player UUID
+     * @param entry Entry
+     */
+    private void store(UUID player, Entry entry) {
+        LimitCategory limits = Prism.getInstance().getConfig().getLimitCategory();
+        boolean oversized = entry.weight() > limits.getUndoMaximumChanges();
+
+        synchronized (this) {
+            removeEntry(player);
+            if (!oversized) {
+                entries.put(player, entry);
+                totalSize += entry.weight();
+
+                Iterator<Map.Entry<UUID, Entry>> iterator = entries.entrySet().iterator();
+                while (totalSize > limits.getUndoMaximumTotalChanges() && iterator.hasNext()) {
+                    Map.Entry<UUID, Entry> eldest = iterator.next();
+                    if (eldest.getKey().equals(player)) {
+                        continue;
+                    }
+
+                    iterator.remove();
+                    totalSize -= eldest.getValue().weight();
+
+                    // Queued before releasing the lock, so a take of that player waits for it
+                    UUID evicted = eldest.getKey();
+                    Entry evictedEntry = eldest.getValue();
+                    enqueue(evicted, () -> spill(evicted, evictedEntry));
+                }
+            }
+        }
+
+        delete(getFile(player));
+        if (oversized) {
+            spill(player, entry);
+        }
+    }
+
+    /**
+     * Removes the entry of a player from memory, or reads and removes its
+     * spill file.
+     *
+     * @param player Player UUID
+     * @return Optional entry
+     */
+    private Optional<Entry> load(UUID player) {
+        synchronized (this) {
+            if (entries.containsKey(player)) {
+                return Optional.of(removeEntry(player));
+            }
+        }
+
+        Path file = getFile(player);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return Optional.of(Entry.read(input));
+        } catch (IOException ex) {
+            Prism.getInstance().getLogger().error("Failed to read undo file of {}", player, ex);
+            return Optional.empty();
+        } finally {
+            delete(file);
+        }
+    }
+
+    private synchronized Entry removeEntry(UUID player) {
+        Entry entry = entries.remove(player);
+        if (entry != null) {
+            totalSize -= entry.weight();
+        }
+
+        return entry;
+    }
+
+    private void spill(UUID player, Entry entry) {
+        if (!Prism.getInstance().getConfig().getLimitCategory().isUndoSpill()) {
+            return;
+        }
+
+        Path file = getFile(player);
+        try {
+            Files.createDirectories(directory);
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                entry.write(output);
+            }
+        } catch (IOException ex) {
+            Prism.getInstance().getLogger().error("Failed to write undo file of {}", player, ex);
+            delete(file);
+        }
+    }
+
+    private Path getFile(UUID player) {
+        return directory.resolve(player + SUFFIX);
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            Prism.getInstance().getLogger().error("Failed to delete {}", file.getFileName(), ex);
+        }
+    }
+
+    /**
+     * The changes of a single rollback or restore.
+     */
+    public static final class Entry {
+
+        // World index, x, y, z, state index and tile index of each block
+        private static final int BLOCK_FIELDS = 6;
+        private static final int BLOCK_BYTES = BLOCK_FIELDS * Integer.BYTES;
+        private static final int NO_TILE = -1;
+
+        private final List<UUID> worlds = new ArrayList<>();
+        private final List<BlockState> palette = new ArrayList<>();
+        private final List<DataView> tiles = new ArrayList<>();
+        private long tileBytes;
+        private int[] blocks = new int[0];
+        private int blockCount;
+        private final List<UUID> entities = new ArrayList<>();
+        private int skippedCount;
+        private Optional<World>[] resolved;
+        private int position;
+        private int appliedCount;
+
+        private Entry() {
+        }
+
+        /**
+         * Encodes the outcome of an applier.
+         *
+         * @param results List of {@link ActionableResult}s
+         * @return Entry
+         */
+        static Entry of(List<ActionableResult> results) {
+            Entry entry = new Entry();
+            Map<UUID, Integer> worldIndexes = new HashMap<>();
+            Map<BlockState, Integer> stateIndexes = new HashMap<>();
+            entry.blocks = new int[results.size() * BLOCK_FIELDS];
+
+            for (ActionableResult result : results) {
+                if (result.getBlockChange().isPresent()) {
+                    BlockChange change = result.getBlockChange().get();
+                    entry.addBlock(worldIndexes, stateIndexes, change.getWorldUuid(), change.getX(), change.getY(), change.getZ(), change.getOriginal(),
+                            change.getOriginalSnapshot().map(BlockSnapshot::toContainer).orElse(null));
+                    continue;
+                }
+
+                Optional<Transaction<?>> transaction = result.getTransaction();
+                if (!transaction.isPresent()) {
+                    entry.skippedCount++;
+                    continue;
+                }
+
+                Object rawOriginal = transaction.get().getOriginal();
+                Object rawFinal = transaction.get().getFinal();
+
+                if (rawOriginal instanceof BlockSnapshot && ((BlockSnapshot) rawOriginal).getLocation().isPresent()) {
+                    BlockSnapshot snapshot = (BlockSnapshot) rawOriginal;
+                    Location<World> location = snapshot.getLocation().get();
+                    entry.addBlock(worldIndexes, stateIndexes, location.getExtent().getUniqueId(),
+                            location.getBlockX(), location.getBlockY(), location.getBlockZ(), snapshot.getState(),
+                            snapshot.createArchetype().isPresent() ? snapshot.toContainer() : null);
+                }
+
+                if (rawFinal instanceof Entity) {
+                    entry.entities.add(((Entity) rawFinal).getUniqueId());
+                }
+            }
+
+            entry.blocks = Arrays.copyOf(entry.blocks, entry.blockCount * BLOCK_FIELDS);
+            return entry;
+        }
+
+        private void addBlock(Map<UUID, Integer> worldIndexes, Map<BlockState, Integer> stateIndexes, UUID world, int x, int y, int z, BlockState state, DataView tile) {
+            int offset = blockCount * BLOCK_FIELDS;
+            blocks[offset] = worldIndexes.computeIfAbsent(world, key -> {
+                worlds.add(key);
+                return worlds.size() - 1;
+            });
+            blocks[offset + 1] = x;
+            blocks[offset + 2] = y;
+            blocks[offset + 3] = z;
+            blocks[offset + 4] = stateIndexes.computeIfAbsent(state, key -> {
+                palette.add(key);
+                return palette.size() - 1;
+            });
+            if (tile != null) {
+                tiles.add(tile);
+                tileBytes += DataUtil.estimateSize(tile);
+            }
+            blocks[offset + 5] = tile != null ? tiles.size() - 1 : NO_TILE;
+            blockCount++;
+        }
+
+        /**
+         * Returns the amount of changes held.
+         *
+         * @return Amount of block and entity changes
+         */
+        public int size() {
+            return blockCount + entities.size();
+        }
+
+        /**
+         * Returns the memory held, counted in changes. Tile entities count
+         * as the amount of changes taking up as much memory as their data.
+         *
+         * @return Weight in changes
+         */
+        long weight() {
+            return size() + tileBytes / BLOCK_BYTES;
+        }
+
+        /**
+         * Returns the amount of results which weren't applied, and so can't
+         * be undone.
+         *
+         * @return Skipped count
+         */
+        public int getSkippedCount() {
+            return skippedCount;
+        }
+
+        /**
+         * Returns the amount of changes reverted so far.
+         *
+         * @return Applied count
+         */
+        public int getAppliedCount() {
+            return appliedCount;
+        }
+
+        /**
+         * Reverts the changes, newest first, until the time budget runs
+         * out. Later calls carry on where the last one stopped. Must be
+         * called from the main thread.
+         *
+         * @param budget Time in nanoseconds which may be spent
+         * @return True once every change has been reverted
+         */
+        public boolean undo(long budget) {
+            long start = System.nanoTime();
+            if (resolved == null) {
+                resolved = resolveWorlds();
+            }
+
+            while (position < size()) {
+                boolean applied = position < blockCount ? undoBlock(blockCount - 1 - position) : undoEntity(entities.get(position - blockCount));
+                if (applied) {
+                    appliedCount++;
+                }
+
+                position++;
+                if (System.nanoTime() - start >= budget) {
+                    break;
+                }
+            }
+
+            return position >= size();
+        }
+
+        private boolean undoBlock(int index) {
+            int offset = index * BLOCK_FIELDS;
+            Optional<World> world = resolved[blocks[offset]];
+            if (!world.isPresent()) {
+                return false;
+            }
+
+            if (blocks[offset + 5] != NO_TILE) {
+                Optional<BlockSnapshot> snapshot = Sponge.getRegistry().createBuilder(BlockSnapshot.Builder.class).build(tiles.get(blocks[offset + 5]));
+                return snapshot.isPresent() && snapshot.get().restore(true, BlockChangeFlags.NONE);
+            }
+
+            BlockState state = palette.get(blocks[offset + 4]);
+            return state != null && world.get().setBlock(blocks[offset + 1], blocks[offset + 2], blocks[offset + 3], state, BlockChangeFlags.NONE);
+        }
+
+        private boolean undoEntity(UUID uuid) {
+            Optional<Entity> entity = findEntity(resolved, uuid);
+            if (entity.isPresent() && !entity.get().isRemoved()) {
+                entity.get().remove();
+                return true;
+            }
+
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Optional<World>[] resolveWorlds() {
+            Optional<World>[] resolved = new Optional[worlds.size()];
+            for (int i = 0; i < resolved.length; i++) {
+                resolved[i] = Sponge.getServer().getWorld(worlds.get(i));
+            }
+
+            return resolved;
+        }
+
+        private static Optional<Entity> findEntity(Optional<World>[] worlds, UUID uuid) {
+            for (Optional<World> world : worlds) {
+                if (world.isPresent()) {
+                    Optional<Entity> entity = world.get().getEntity(uuid);
+                    if (entity.isPresent()) {
+                        return entity;
+                    }
+                }
+            }
+
+            for (World world : Sponge.getServer().getWorlds()) {
+                Optional<Entity> entity = world.getEntity(uuid);
+                if (entity.isPresent()) {
+                    return entity;
+                }
+            }
+
+            return Optional.empty();
+        }
+
+        private void write(DataOutputStream output) throws IOException {
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+
+            output.writeInt(worlds.size());
+            for (UUID world : worlds) {
+                writeUuid(output, world);
+            }
+
+            output.writeInt(palette.size());
+            for (BlockState state : palette) {
+                output.writeUTF(state.getId());
+            }
+
+            output.writeInt(tiles.size());
+            for (DataView tile : tiles) {
+                DataCodec.writeView(output, tile);
+            }
+
+            output.writeInt(blockCount);
+            for (int i = 0; i < blockCount * BLOCK_FIELDS; i++) {
+                output.writeInt(blocks[i]);
+            }
+
+            output.writeInt(entities.size());
+            for (UUID entity : entities) {
+                writeUuid(output, entity);
+            }
+
+            output.writeInt(skippedCount);
+        }
+
+        private static Entry read(DataInputStream input) throws IOException {
+            if (input.readInt() != MAGIC || input.readByte() != VERSION) {
+                throw new IOException("Not an undo file");
+            }
+
+            Entry entry = new Entry();
+
+            int worldCount = input.readInt();
+            for (int i = 0; i < worldCount; i++) {
+                entry.worlds.add(readUuid(input));
+            }
+
+            // States which no longer exist are kept as null and skipped
+            int paletteSize = input.readInt();
+            for (int i = 0; i < paletteSize; i++) {
+                entry.palette.add(BlockUtil.getBlockState(input.readUTF()).orElse(null));
+            }
+
+            int tileCount = input.readInt();
+            for (int i = 0; i < tileCount; i++) {
+                DataView tile = DataCodec.readView(input);
+                entry.tiles.add(tile);
+                entry.tileBytes += DataUtil.estimateSize(tile);
+            }
+
+            entry.blockCount = input.readInt();
+            entry.blocks = new int[entry.blockCount * BLOCK_FIELDS];
+            for (int i = 0; i < entry.blocks.length; i++) {
+                entry.blocks[i] = input.readInt();
+            }
+
+            int entityCount = input.readInt();
+            for (int i = 0; i < entityCount; i++) {
+                entry.entities.add(readUuid(input));
+            }
+
+            entry.skippedCount = input.readInt();
+            return entry;
+        }
+
+        private static void writeUuid(DataOutputStream output, UUID uuid) throws IOException {
+            output.writeLong(uuid.getMostSignificantBits());
+            output.writeLong(uuid.getLeastSignificantBits());
+        }
+
+        private static UUID readUuid(DataInputStream input) throws IOException {
+            return new UUID(input.readLong(), input.readLong());
+        }
+    }
+}
@@ -25,11 +25,20 @@
 package com.helion3.prism.util;
 
 import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+import com.google.common.collect.ImmutableSet;
+import com.helion3.prism.Prism;
 import org.spongepowered.api.block.BlockType;
 import org.spongepowered.api.block.BlockTypes;
 import org.spongepowered.api.entity.Entity;
 import org.spongepowered.api.entity.EntityTypes;
+import org.spongepowered.api.scheduler.Task;
+import org.spongepowered.api.world.BlockChangeFlags;
+import org.spongepowered.api.world.Chunk;
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 
@@ -38,42 +47,24 @@ public class WorldUtil {
     private WorldUtil() {
     }
 
-    public static int removeIllegalBlocks(Location<World> location, int radius) {
-        final World world = location.getExtent();
-
-        int xMin = location.getBlockX() - radius;
-        int xMax = location.getBlockX() + radius;
-
-        int zMin = location.getBlockZ() - radius;
-        int zMax = location.getBlockZ() + radius;
-
-        int yMin = location.getBlockY() - radius;
-        int yMax = location.getBlockY() + radius;
-
-        // Clamp Y basement
-        if (yMin < 0) {
-            yMin = 0;
-        }
-
-        // Clamp Y ceiling
-        if (yMax >= world.getDimension().getBuildHeight()) {
-            yMax = world.getDimension().getBuildHeight();
-        }
-
-        int changeCount = 0;
-        for (int x = xMin; x <= xMax; x++) {
-            for (int z = zMin; z <= zMax; z++) {
-                for (int y = yMin; y <= yMax; y++) {
-                    BlockType existing = world.getBlock(x, y, z).getType();
-                    if (existing.equals(BlockTypes.FIRE) || existing.equals(BlockTypes.TNT)) {
-                        world.setBlockType(x, y, z, BlockTypes.AIR);
-                        changeCount++;
-                    }
-                }
-            }
-        }
+    /**
+     * Get the block types removed by the clean flag.
+     *
+     * @return Set of BlockTypes
+     */
+    public static Set<BlockType> getIllegalBlockTypes() {
+        return ImmutableSet.of(BlockTypes.FIRE, BlockTypes.TNT);
+    }
 
-        return changeCount;
+    /**
+     * Remove fire and TNT from a given radius around a location.
+     *
+     * @param location Location center
+     * @param radius Integer radius around location
+     * @return CompletableFuture of the count of removals
+     */
+    public static CompletableFuture<Integer> removeIllegalBlocks(Location<World> location, int radius) {
+        return removeAroundFromLocation(getIllegalBlockTypes(), location, radius);
     }
 
     /**
@@ -82,43 +73,26 @@ public class WorldUtil {
      * @param type BlockType to remove.
      * @param location Location center
      * @param radius Integer radius around location
-     * @return integer Count of removals
+     * @return CompletableFuture of the count of removals
      */
-    public static int removeAroundFromLocation(BlockType type, Location<World> location, int radius) {
-        final World world = location.getExtent();
-
-        int xMin = location.getBlockX() - radius;
-        int xMax = location.getBlockX() + radius;
-
-        int zMin = location.getBlockZ() - radius;
-        int zMax = location.getBlockZ() + radius;
-
-        int yMin = location.getBlockY() - radius;
-        int yMax = location.getBlockY() + radius;
-
-        // Clamp Y basement
-        if (yMin < 0) {
-            yMin = 0;
-        }
-
-        // Clamp Y ceiling
-        if (yMax >= world.getDimension().getBuildHeight()) {
-            yMax = world.getDimension().getBuildHeight();
-        }
-
-        int changeCount = 0;
-        for (int x = xMin; x <= xMax; x++) {
-            for (int z = zMin; z <= zMax; z++) {
-                for (int y = yMin; y <= yMax; y++) {
-                    if (world.getBlock(x, y, z).getType().equals(type)) {
-                        world.setBlockType(x, y, z, BlockTypes.AIR);
-                        changeCount++;
-                    }
-                }
-            }
-        }
+    public static CompletableFuture<Integer> removeAroundFromLocation(BlockType type, Location<World> location, int radius) {
+        return removeAroundFromLocation(ImmutableSet.of(type), location, radius);
+    }
 
-        return changeCount;
+    /**
+     * Remove any of the given blocks from a given radius around a location.
+     * The area is swept once, a chunk at a time, spread over as many ticks
+     * as needed to stay within the applier tick budget.
+     *
+     * @param types Set of BlockTypes to remove
+     * @param location Location center
+     * @param radius Integer radius around location
+     * @return CompletableFuture of the count of removals
+     */
+    public static CompletableFuture<Integer> removeAroundFromLocation(Set<BlockType> types, Location<World> location, int radius) {
+        BlockSweep sweep = new BlockSweep(types, location, radius);
+        Task.builder().intervalTicks(1).execute(sweep).submit(Prism.getInstance());
+        return sweep.future;
     }
 
     /**
@@ -160,14 +134,143 @@ public class WorldUtil {
      *
      * @param location Location center
      * @param radius Integer radius around location
-     * @return integer Count of removals
+     * @return CompletableFuture of the count of removals
+     */
+    public static CompletableFuture<Integer> removeLiquidsAroundLocation(Location<World> location, int radius) {
+        return removeAroundFromLocation(ImmutableSet.copyOf(BlockUtil.getLiquidBlockTypes()), location, radius);
+    }
+
+    /**
+     * Sweeps a cube around a location chunk by chunk, replacing blocks of
+     * the target types with air. Runs every tick until done, each run
+     * stops once the tick budget has been used.
      */
-    public static int removeLiquidsAroundLocation(Location<World> location, int radius) {
-        int changeCount = 0;
-        for (BlockType liquid : BlockUtil.getLiquidBlockTypes()) {
-            changeCount = removeAroundFromLocation(liquid, location, radius);
+    private static final class BlockSweep implements Consumer<Task> {
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+        private final Set<BlockType> types;
+        private final World world;
+        private final long budget;
+        private final int xMin;
+        private final int xMax;
+        private final int yMin;
+        private final int yMax;
+        private final int zMin;
+        private final int zMax;
+        private final int chunkZMin;
+        private final int chunkXMax;
+        private final int chunkZMax;
+
+        // Next column to sweep
+        private int chunkX;
+        private int chunkZ;
+        private int x;
+        private int z;
+        private Chunk chunk;
+        private int changeCount;
+
+        private BlockSweep(Set<BlockType> types, Location<World> location, int radius) {
+            this.types = types;
+            this.world = location.getExtent();
+            this.budget = TimeUnit.MILLISECONDS.toNanos(Math.max(Prism.getInstance().getConfig().getLimitCategory().getApplierTickBudget(), 1));
+
+            xMin = location.getBlockX() - radius;
+            xMax = location.getBlockX() + radius;
+
+            zMin = location.getBlockZ() - radius;
+            zMax = location.getBlockZ() + radius;
+
+            // Clamp Y to the world
+            yMin = Math.max(location.getBlockY() - radius, 0);
+            yMax = Math.min(location.getBlockY() + radius, world.getDimension().getBuildHeight() - 1);
+
+            chunkX = xMin >> 4;
+            chunkZ = zMin >> 4;
+            chunkZMin = chunkZ;
+            chunkXMax = xMax >> 4;
+            chunkZMax = zMax >> 4;
         }
 
-        return changeCount;
+        @Override
+        public void accept(Task task) {
+            if (!world.isLoaded()) {
+                task.cancel();
+                future.complete(changeCount);
+                return;
+            }
+
+            long start = System.nanoTime();
+            while (chunkX <= chunkXMax) {
+                if (chunk == null && !loadChunk()) {
+                    nextChunk();
+                    continue;
+                }
+
+                sweepColumn();
+                if (!nextColumn()) {
+                    nextChunk();
+                }
+
+                if (System.nanoTime() - start >= budget) {
+                    return;
+                }
+            }
+
+            task.cancel();
+            future.complete(changeCount);
+        }
+
+        /**
+         * Loads the current chunk, chunks which were never generated are
+         * skipped.
+         *
+         * @return boolean True if the chunk exists
+         */
+        private boolean loadChunk() {
+            chunk = world.loadChunk(chunkX, 0, chunkZ, false).orElse(null);
+            x = Math.max(xMin, chunkX << 4);
+            z = Math.max(zMin, chunkZ << 4);
+            return chunk != null;
+        }
+
+        private void sweepColumn() {
+            for (int y = yMin; y <= yMax; y++) {
+                // Without physics, liquids in chunks which are yet to be
+                // swept can't flow back into chunks already drained
+                if (types.contains(chunk.getBlockType(x, y, z))) {
+                    chunk.setBlock(x, y, z, BlockTypes.AIR.getDefaultState(), BlockChangeFlags.NONE);
+                    changeCount++;
+                }
+            }
+        }
+
+        /**
+         * Moves to the next column of the current chunk.
+         *
+         * @return boolean False if the chunk is done
+         */
+        private boolean nextColumn() {
+            if (z < Math.min(zMax, (chunkZ << 4) + 15)) {
+                z++;
+                return true;
+            }
+
+            if (x < Math.min(xMax, (chunkX << 4) + 15)) {
+                x++;
+                z = Math.max(zMin, chunkZ << 4);
+                return true;
+            }
+
+            return false;
+        }
+
+        private void nextChunk() {
+            chunk = null;
+            if (chunkZ < chunkZMax) {
+                chunkZ++;
+            } else {
+                chunkZ = chunkZMin;
+                chunkX++;
+            }
+        }
     }
-}
\ No newline at end of file
+}
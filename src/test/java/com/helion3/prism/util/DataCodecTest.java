@@ -0,0 +1,121 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.spongepowered.api.data.DataContainer;
+import org.spongepowered.api.data.DataQuery;
+import org.spongepowered.api.data.DataView;
+
+public class DataCodecTest {
+
+    private static final int[] VAR_INTS = new int[]{0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE};
+
+    @Test
+    public void testVarIntRoundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        for (int value : VAR_INTS) {
+            DataCodec.writeVarInt(output, value);
+        }
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (int value : VAR_INTS) {
+            Assertions.assertEquals(value, DataCodec.readVarInt(input));
+        }
+    }
+
+    @Test
+    public void testVarIntSize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataCodec.writeVarInt(new DataOutputStream(bytes), 127);
+        Assertions.assertEquals(1, bytes.size());
+
+        bytes.reset();
+        DataCodec.writeVarInt(new DataOutputStream(bytes), 128);
+        Assertions.assertEquals(2, bytes.size());
+    }
+
+    @Test
+    public void testMalformedVarInt() {
+        byte[] bytes = new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01};
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+        Assertions.assertThrows(IOException.class, () -> DataCodec.readVarInt(input));
+    }
+
+    @Test
+    public void testViewRoundTrip() throws IOException {
+        DataContainer container = DataContainer.createNew();
+        container.set(DataQuery.of("Target"), "minecraft:chest");
+        container.set(DataQuery.of("Quantity"), 64);
+        container.set(DataQuery.of("Seed"), Long.MAX_VALUE);
+        container.set(DataQuery.of("Custom"), true);
+        container.set(DataQuery.of("Lines"), Arrays.asList("first", "second"));
+        container.set(DataQuery.of("Original", "UnsafeData", "Custom"), 1.5D);
+        container.set(DataQuery.of("Bytes"), new byte[]{1, 2, 3});
+
+        DataContainer decoded = DataCodec.decode(DataCodec.encode(container));
+
+        Assertions.assertEquals("minecraft:chest", decoded.getString(DataQuery.of("Target")).orElse(null));
+        Assertions.assertEquals(64, (int) decoded.getInt(DataQuery.of("Quantity")).orElse(0));
+        Assertions.assertEquals(Long.MAX_VALUE, (long) decoded.getLong(DataQuery.of("Seed")).orElse(0L));
+        Assertions.assertTrue(decoded.getBoolean(DataQuery.of("Custom")).orElse(false));
+        Assertions.assertEquals(Arrays.asList("first", "second"), decoded.getStringList(DataQuery.of("Lines")).orElse(null));
+        Assertions.assertEquals(1.5D, decoded.getDouble(DataQuery.of("Original", "UnsafeData", "Custom")).orElse(0D));
+        Assertions.assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) decoded.get(DataQuery.of("Bytes")).orElse(null));
+    }
+
+    @Test
+    public void testRepeatedKeysAreReferenced() throws IOException {
+        DataContainer container = DataContainer.createNew();
+        for (int index = 0; index < 10; index++) {
+            container.set(DataQuery.of("Entry" + index, "SomeRatherLongKey"), index);
+        }
+
+        byte[] encoded = DataCodec.encode(container);
+        DataContainer decoded = DataCodec.decode(encoded);
+
+        String encodedString = new String(encoded, StandardCharsets.ISO_8859_1);
+        Assertions.assertEquals(encodedString.indexOf("SomeRatherLongKey"), encodedString.lastIndexOf("SomeRatherLongKey"));
+        for (int index = 0; index < 10; index++) {
+            DataView entry = decoded.getView(DataQuery.of("Entry" + index)).orElse(null);
+            Assertions.assertNotNull(entry);
+            Assertions.assertEquals(index, (int) entry.getInt(DataQuery.of("SomeRatherLongKey")).orElse(-1));
+        }
+    }
+
+    @Test
+    public void testUnsupportedVersion() {
+        Assertions.assertThrows(IOException.class, () -> DataCodec.decode(new byte[]{(byte) (DataCodec.FORMAT_VERSION + 1), 0}));
+    }
+}
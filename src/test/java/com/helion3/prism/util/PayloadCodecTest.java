@@ -0,0 +1,66 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.util;
+
+import java.io.IOException;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.spongepowered.api.data.DataContainer;
+import org.spongepowered.api.data.DataQuery;
+
+public class PayloadCodecTest {
+
+    private static final DataQuery TEXT = DataQuery.of("Text1");
+
+    @Test
+    public void testCompressedRoundTrip() throws IOException {
+        DataContainer container = DataContainer.createNew();
+        container.set(TEXT, StringUtils.repeat("minecraft:stone ", 100));
+
+        PayloadCodec.Payload payload = new PayloadCodec("deflate", 64).encode(container);
+        Assertions.assertEquals(PayloadCodec.CODEC_DEFLATE, payload.getCodec());
+
+        DataContainer decoded = PayloadCodec.decode(payload.getCodec(), payload.getBytes());
+        Assertions.assertEquals(container.getString(TEXT), decoded.getString(TEXT));
+    }
+
+    @Test
+    public void testSmallPayloadIsNotCompressed() throws IOException {
+        DataContainer container = DataContainer.createNew();
+        container.set(TEXT, "minecraft:stone");
+
+        PayloadCodec.Payload payload = new PayloadCodec("deflate", 64).encode(container);
+        Assertions.assertEquals(PayloadCodec.CODEC_NONE, payload.getCodec());
+
+        DataContainer decoded = PayloadCodec.decode(payload.getCodec(), payload.getBytes());
+        Assertions.assertEquals(container.getString(TEXT), decoded.getString(TEXT));
+    }
+
+    @Test
+    public void testUnknownCodec() {
+        Assertions.assertThrows(IOException.class, () -> PayloadCodec.decode(-1, new byte[0]));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * This file is part of Prism, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Helion3 http://helion3.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.helion3.prism.util;
+
+import java.util.List;
+
+import com.google.common.collect.Range;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SpatialKeyTest {
+
+    @Test
+    public void testSameChunk() {
+        Assertions.assertEquals(SpatialKey.of(0, 0), SpatialKey.of(15, 15));
+        Assertions.assertEquals(SpatialKey.of(-16, -16), SpatialKey.of(-1, -1));
+        Assertions.assertNotEquals(SpatialKey.of(-1, 0), SpatialKey.of(0, 0));
+        Assertions.assertNotEquals(SpatialKey.of(0, -1), SpatialKey.of(0, 0));
+    }
+
+    @Test
+    public void testRangesCoverArea() {
+        List<Range<Long>> ranges = SpatialKey.ranges(-40, -40, 40, 40);
+        Assertions.assertEquals(6, ranges.size());
+
+        for (int x = -40; x <= 40; x += 3) {
+            for (int z = -40; z <= 40; z += 3) {
+                long key = SpatialKey.of(x, z);
+                Assertions.assertTrue(ranges.stream().anyMatch(range -> range.contains(key)), x + "," + z);
+            }
+        }
+
+        long outside = SpatialKey.of(0, 48);
+        Assertions.assertFalse(ranges.stream().anyMatch(range -> range.contains(outside)));
+    }
+
+    @Test
+    public void testWideAreaUsesSingleRange() {
+        List<Range<Long>> ranges = SpatialKey.ranges(-10000, -10000, 10000, 10000);
+        Assertions.assertEquals(1, ranges.size());
+        Assertions.assertTrue(ranges.get(0).contains(SpatialKey.of(123, -4567)));
+    }
+
+    @Test
+    public void testExtremeCoordinates() {
+        Assertions.assertTrue(SpatialKey.of(-30000000, -30000000) < SpatialKey.of(-30000000, 30000000));
+        Assertions.assertTrue(SpatialKey.of(-30000000, 30000000) < SpatialKey.of(30000000, -30000000));
+    }
+}